@@ -1,6 +1,7 @@
 package com.interview.combined;
 
 import com.interview.util.DatabaseUtil;
+import com.interview.util.StagedUpsert;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -36,6 +37,13 @@ public class Q01_BasicDAO {
             System.out.println("\nAfter updating product 1:");
             System.out.println(dao.findById(1));
 
+            // Test saveAll: a restock feed with known and new products in one merge
+            Product restocked = dao.findById(2);
+            restocked.setStock(restocked.getStock() + 25);
+            dao.saveAll(List.of(restocked, new Product("Webcam", 49.99, 15)));
+            System.out.println("\nAfter saveAll:");
+            dao.findAll().forEach(System.out::println);
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
         }
@@ -51,6 +59,9 @@ public class Q01_BasicDAO {
 
         void update(Product product) throws SQLException;
 
+        // Updates products with an id and inserts those without, instead of a save or update per product
+        int saveAll(List<Product> products) throws SQLException;
+
         void delete(int id) throws SQLException;
     }
 
@@ -182,6 +193,19 @@ public class Q01_BasicDAO {
             }
         }
 
+        @Override
+        public int saveAll(List<Product> products) throws SQLException {
+            List<Object[]> rows = new ArrayList<>(products.size());
+            for (Product product : products) {
+                // id 0 means not saved yet, so the database generates one
+                Integer id = product.getId() == 0 ? null : product.getId();
+                rows.add(new Object[]{id, product.getName(), product.getPrice(), product.getStock()});
+            }
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                return StagedUpsert.merge(conn, StagedUpsert.Target.PRODUCTS, rows);
+            }
+        }
+
         @Override
         public void delete(int id) throws SQLException {
             String sql = "DELETE FROM products WHERE product_id=?";
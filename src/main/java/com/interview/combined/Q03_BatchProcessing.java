@@ -1,5 +1,6 @@
 package com.interview.combined;
 
+import com.interview.util.BulkUpdatePlanner;
 import com.interview.util.DatabaseUtil;
 
 import java.sql.*;
@@ -49,26 +50,23 @@ public class Q03_BatchProcessing {
                         results.length, (endTime - startTime));
             }
 
-            // Batch update
-            String updateSQL = "UPDATE products SET price = price * 1.1 WHERE product_id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
-
-                long startTime = System.currentTimeMillis();
+            // Set-based update: ids are collapsed into ranges instead of one UPDATE per id
+            BulkUpdatePlanner planner = new BulkUpdatePlanner();
+            List<Integer> idsToUpdate = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                idsToUpdate.add(i);
+            }
 
-                // Update first 50 products
-                for (int i = 1; i <= 50; i++) {
-                    pstmt.setInt(1, i);
-                    pstmt.addBatch();
-                }
+            long startTime = System.currentTimeMillis();
 
-                int[] results = pstmt.executeBatch();
-                conn.commit();
+            int updated = planner.update(conn, "products", "product_id",
+                    "price = price * 1.1", idsToUpdate);
+            conn.commit();
 
-                long endTime = System.currentTimeMillis();
+            long endTime = System.currentTimeMillis();
 
-                System.out.printf("Updated %d products in %d ms%n",
-                        results.length, (endTime - startTime));
-            }
+            System.out.printf("Updated %d products in %d ms using %s%n",
+                    updated, (endTime - startTime), planner.plan(idsToUpdate));
 
             // Show some results
             try (Statement stmt = conn.createStatement()) {
@@ -1,11 +1,32 @@
 package com.interview.combined;
 
+import com.interview.util.CustomerStatsUtil;
 import com.interview.util.DatabaseUtil;
+import com.interview.util.IdempotencyFilter;
+import com.interview.util.LatencyHistogram;
+import com.interview.util.MetricsRegistry;
+import com.interview.util.OrderOutbox;
+import com.interview.util.StockLedger;
+import com.interview.util.StructuredLogger;
+import com.interview.util.TransactionTemplate;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -17,6 +38,7 @@ public class Q04_TransactionManagement {
      */
 
     private static final Logger logger = Logger.getLogger(Q04_TransactionManagement.class.getName());
+    private static final StructuredLogger log = StructuredLogger.of(logger);
 
     public static void main(String[] args) {
         // Configure logging
@@ -25,7 +47,29 @@ public class Q04_TransactionManagement {
         logger.addHandler(handler);
         logger.setLevel(Level.ALL);
 
-        OrderProcessor processor = new OrderProcessor();
+        // Hot products are reserved in memory and reach products.stock on the ledger's flush
+        StockLedger stockLedger = new StockLedger(1_024, Path.of("src/main/db/stock-ledger.journal"));
+
+        // Bring older databases up to the current schema
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            DatabaseUtil.ensureOrderIdempotencyKey(conn);
+            CustomerStatsUtil.ensureCustomerStatsTable(conn);
+            OrderOutbox.ensureTables(conn);
+            stockLedger.open(conn, 1, 2);
+        } catch (SQLException e) {
+            System.err.println("Setup error: " + e.getMessage());
+            return;
+        }
+        stockLedger.startFlushing(1, TimeUnit.SECONDS);
+
+        OrderProcessor processor = new OrderProcessor(stockLedger);
+
+        // Drives customer_stats, rollups and notifications from the outbox in the background
+        OrderOutbox.Dispatcher dispatcher = new OrderOutbox.Dispatcher(List.of(
+                new OrderOutbox.CustomerStatsConsumer(),
+                new OrderOutbox.ProductSalesRollupConsumer(),
+                new OrderOutbox.NotificationConsumer()), 500);
+        dispatcher.start(200, TimeUnit.MILLISECONDS);
 
         // Test successful order
         try {
@@ -42,104 +86,633 @@ public class Q04_TransactionManagement {
         } catch (Exception e) {
             System.err.println("Expected error: " + e.getMessage());
         }
+
+        // Idempotent order: the client's retry with the same key is rejected
+        String key = "order-" + System.currentTimeMillis();
+        System.out.println("First attempt placed: " + processor.processOrder(key, 2, 3, 1));
+        System.out.println("Retry placed: " + processor.processOrder(key, 2, 3, 1));
+
+        // Group commit: concurrent orders share one transaction, each with its own outcome
+        try (GroupCommitOrderIntake intake = new GroupCommitOrderIntake(processor, 5, 64)) {
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(intake.submit(1, 2, 1));
+            }
+            results.add(intake.submit(2, 2, 1000)); // fails on its own savepoint
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).join();
+                    System.out.println("Grouped order " + i + " processed successfully");
+                } catch (CompletionException e) {
+                    System.err.println("Grouped order " + i + " failed: " + e.getCause().getMessage());
+                }
+            }
+        }
+
+        // Basket checkout: one transaction for all lines
+        List<LineResult> basket = processor.processOrder(3, List.of(
+                new OrderLine(3, 1), new OrderLine(1, 1), new OrderLine(2, 2), new OrderLine(1, 5000)));
+        basket.forEach(result -> System.out.println(result.accepted()
+                ? "Line accepted: " + result.line()
+                : "Line rejected: " + result.line() + " (" + result.reason() + ")"));
+
+        // Deliver whatever the background dispatcher hasn't picked up yet
+        System.out.println("Outbox events delivered on shutdown: " + dispatcher.runOnce());
+        dispatcher.close();
+
+        // Final flush of ledger reservations into products.stock
+        try {
+            stockLedger.close();
+        } catch (SQLException e) {
+            System.err.println("Stock ledger flush failed: " + e.getMessage());
+        }
+
+        // Lock contention seen by each operation
+        processor.transactions().snapshot().forEach((operation, stats) ->
+                System.out.println(operation + ": " + stats));
+
+        System.out.println("\nLatency:\n" + MetricsRegistry.global().snapshot());
+    }
+
+    record OrderLine(int productId, int quantity) {
+    }
+
+    // Outcome of one basket line; reason is null when the line was accepted
+    record LineResult(OrderLine line, boolean accepted, String reason) {
     }
 
     static class OrderProcessor {
+        // Optional in-memory ledger for hot products; untracked products go straight to SQLite
+        private final StockLedger stockLedger;
+        private final TransactionTemplate transactions;
+        private final IdempotencyFilter idempotencyFilter;
+        private final LatencyHistogram placeOrderLatency = MetricsRegistry.global().histogram("OrderProcessor.placeOrder");
+        private final LatencyHistogram basketLatency = MetricsRegistry.global().histogram("OrderProcessor.processBasket");
+
+        OrderProcessor() {
+            this(null);
+        }
+
+        OrderProcessor(StockLedger stockLedger) {
+            this(stockLedger, new TransactionTemplate());
+        }
+
+        OrderProcessor(StockLedger stockLedger, TransactionTemplate transactions) {
+            this(stockLedger, transactions, new IdempotencyFilter(100_000, 10_000));
+        }
+
+        OrderProcessor(StockLedger stockLedger, TransactionTemplate transactions, IdempotencyFilter idempotencyFilter) {
+            this.stockLedger = stockLedger;
+            this.transactions = transactions;
+            this.idempotencyFilter = idempotencyFilter;
+        }
+
+        TransactionTemplate transactions() {
+            return transactions;
+        }
+
         public void processOrder(int customerId, int productId, int quantity) {
-            Connection conn = null;
-            try {
-                conn = DatabaseUtil.getConnection();
-                conn.setAutoCommit(false);
+            placeOrder(null, customerId, productId, quantity);
+        }
 
-                // Check product availability
-                if (!checkStock(conn, productId, quantity)) {
-                    throw new SQLException("Insufficient stock");
-                }
+        /*
+         * Idempotent variant for clients that retry on timeouts. Returns false, without creating
+         * another order, when an order with the same key was already placed. Recent keys are
+         * rejected in memory; older ones are caught by a read-only lookup or the unique index.
+         */
+        public boolean processOrder(String idempotencyKey, int customerId, int productId, int quantity) {
+            IdempotencyFilter.Check check = idempotencyFilter.check(idempotencyKey);
+            if (check == IdempotencyFilter.Check.DUPLICATE) {
+                log.at(Level.INFO).with("idempotencyKey", idempotencyKey).log("Duplicate order rejected in memory");
+                return false;
+            }
 
-                // Update stock
-                updateStock(conn, productId, quantity);
+            // Bloom filter hit: a cheap read settles most of these without a write transaction
+            if (check == IdempotencyFilter.Check.UNKNOWN && orderKeyExists(idempotencyKey)) {
+                idempotencyFilter.record(idempotencyKey);
+                log.at(Level.INFO).with("idempotencyKey", idempotencyKey).log("Duplicate order rejected by lookup");
+                return false;
+            }
 
-                // Create order
-                createOrder(conn, customerId, productId, quantity);
+            boolean placed = placeOrder(idempotencyKey, customerId, productId, quantity);
+            idempotencyFilter.record(idempotencyKey);
+            if (!placed) {
+                log.at(Level.INFO).with("idempotencyKey", idempotencyKey).log("Duplicate order rejected by unique index");
+            }
+            return placed;
+        }
+
+        // Returns false if the idempotency key was already used
+        private boolean placeOrder(String idempotencyKey, int customerId, int productId, int quantity) {
+            long started = System.nanoTime();
+            try {
+                return commitOrder(idempotencyKey, customerId, productId, quantity);
+            } finally {
+                placeOrderLatency.recordSince(started);
+            }
+        }
 
-                // Update customer stats
-                updateCustomerStats(conn, customerId);
+        private boolean commitOrder(String idempotencyKey, int customerId, int productId, int quantity) {
+            boolean reservedInLedger = false;
+            try {
+                // Done once, outside the transaction, so a busy retry doesn't reserve twice
+                reservedInLedger = reserveInLedger(productId, quantity);
+                boolean stockReserved = reservedInLedger;
 
-                // All operations successful, commit transaction
-                conn.commit();
-                logger.info("Order processed successfully");
+                // Retried as a whole if another writer holds the database lock
+                transactions.execute("processOrder", conn -> {
+                    applyOrder(conn, idempotencyKey, customerId, productId, quantity, stockReserved);
+                    return null;
+                });
+                log.at(Level.INFO).with("customerId", customerId).with("productId", productId)
+                        .with("quantity", quantity).log("Order processed successfully");
+                return true;
 
             } catch (SQLException e) {
+                if (reservedInLedger) {
+                    releaseReservation(productId, quantity);
+                }
+                if (idempotencyKey != null && isDuplicateKey(e)) {
+                    return false;
+                }
                 logger.log(Level.SEVERE, "Error processing order", e);
+                throw new RuntimeException("Order processing failed", e);
+            }
+        }
+
+        // Same database, and the same busy retries, as the order transaction itself
+        private boolean orderKeyExists(String idempotencyKey) {
+            String sql = "SELECT 1 FROM orders WHERE idempotency_key = ?";
+            try {
+                return transactions.execute("orderKeyExists", conn -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, idempotencyKey);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            return rs.next();
+                        }
+                    }
+                });
+            } catch (SQLException e) {
+                // Not fatal: the unique index still catches the duplicate
+                logger.log(Level.WARNING, "Idempotency lookup failed", e);
+                return false;
+            }
+        }
+
+        private static boolean isDuplicateKey(SQLException e) {
+            // SQLITE_CONSTRAINT (19), possibly reported as the extended SQLITE_CONSTRAINT_UNIQUE (2067)
+            String message = e.getMessage();
+            return (e.getErrorCode() & 0xFF) == 19 && message != null && message.contains("idempotency_key");
+        }
+
+        /*
+         * Basket checkout: all lines in one transaction. Lines for the same product are merged and
+         * processed in product id order, so concurrent baskets touch rows in a consistent order.
+         * Stock is reserved with batched conditional UPDATEs (see reserveStock), so a line without
+         * enough stock, or one that fails outright, is reported while the rest of the basket still
+         * commits. Order rows are only batched for lines whose stock was reserved.
+         */
+        public List<LineResult> processOrder(int customerId, List<OrderLine> lines) {
+            long started = System.nanoTime();
+            try {
+                return processBasket(customerId, lines);
+            } finally {
+                basketLatency.recordSince(started);
+            }
+        }
+
+        private List<LineResult> processBasket(int customerId, List<OrderLine> lines) {
+            // Merge duplicate products and sort by product id
+            Map<Integer, Integer> merged = new TreeMap<>();
+            for (OrderLine line : lines) {
+                if (line.quantity() <= 0) {
+                    throw new IllegalArgumentException("Quantity must be positive: " + line);
+                }
+                merged.merge(line.productId(), line.quantity(), Integer::sum);
+            }
+            List<OrderLine> sorted = new ArrayList<>(merged.size());
+            merged.forEach((productId, quantity) -> sorted.add(new OrderLine(productId, quantity)));
+
+            int size = sorted.size();
+            boolean[] stockReserved = new boolean[size];
+            String[] ledgerFailures = new String[size];
+
+            // Ledger reservations happen once, outside the (retryable) transaction
+            for (int i = 0; i < size; i++) {
                 try {
-                    if (conn != null) {
-                        conn.rollback();
-                        logger.info("Transaction rolled back");
+                    stockReserved[i] = reserveInLedger(sorted.get(i).productId(), sorted.get(i).quantity());
+                } catch (SQLException e) {
+                    ledgerFailures[i] = e.getMessage();
+                }
+            }
+
+            try {
+                String[] rejected = transactions.execute("processBasket", conn -> {
+                    String[] outcome = ledgerFailures.clone();
+                    int acceptedOrders = 0;
+
+                    String reserveSql = "UPDATE products SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
+                    String orderSql = "INSERT INTO orders (customer_id, product_id, quantity) VALUES (?, ?, ?)";
+                    try (PreparedStatement reserve = conn.prepareStatement(reserveSql);
+                         PreparedStatement insert = conn.prepareStatement(orderSql)) {
+
+                        reserveStock(conn, reserve, sorted, stockReserved, outcome);
+
+                        for (int i = 0; i < size; i++) {
+                            if (outcome[i] != null) {
+                                continue;
+                            }
+                            OrderLine line = sorted.get(i);
+                            insert.setInt(1, customerId);
+                            insert.setInt(2, line.productId());
+                            insert.setInt(3, line.quantity());
+                            insert.addBatch();
+                            acceptedOrders++;
+                        }
+
+                        // Order rows for all accepted lines in one batch, then one outbox event per row
+                        if (acceptedOrders > 0) {
+                            long lastOrderId = maxOrderId(conn);
+                            insert.executeBatch();
+                            OrderOutbox.appendOrdersAfter(conn, OrderOutbox.ORDER_PLACED, lastOrderId);
+                        }
+                    }
+                    return outcome;
+                });
+
+                List<LineResult> results = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    OrderLine line = sorted.get(i);
+                    if (rejected[i] != null && stockReserved[i]) {
+                        releaseReservation(line.productId(), line.quantity());
+                    }
+                    results.add(new LineResult(line, rejected[i] == null, rejected[i]));
+                }
+                if (log.isLoggable(Level.INFO)) {
+                    log.at(Level.INFO).with("customerId", customerId)
+                            .with("accepted", results.stream().filter(LineResult::accepted).count())
+                            .with("lines", size).log("Basket processed");
+                }
+                return results;
+
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Error processing basket", e);
+                for (int i = 0; i < size; i++) {
+                    if (stockReserved[i]) {
+                        releaseReservation(sorted.get(i).productId(), sorted.get(i).quantity());
                     }
-                } catch (SQLException rollbackEx) {
-                    logger.log(Level.SEVERE, "Error rolling back transaction", rollbackEx);
                 }
                 throw new RuntimeException("Order processing failed", e);
-            } finally {
+            }
+        }
+
+        /*
+         * Reserves SQLite stock for every open line that the ledger didn't cover, as one batch under
+         * a savepoint. A line the conditional UPDATE doesn't match is marked "Insufficient stock".
+         * If the batch fails part way (e.g. a trigger rejects a row), the savepoint undoes the lines
+         * it already applied and the lines are retried one by one, each under its own savepoint,
+         * so only the failing line is rejected. Busy errors propagate for the template to retry.
+         */
+        private static void reserveStock(Connection conn, PreparedStatement reserve, List<OrderLine> lines,
+                                         boolean[] stockReserved, String[] outcome) throws SQLException {
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                if (outcome[i] == null && !stockReserved[i]) {
+                    pending.add(i);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            Savepoint batchSavepoint = conn.setSavepoint();
+            try {
+                for (int i : pending) {
+                    bindReservation(reserve, lines.get(i));
+                    reserve.addBatch();
+                }
+                int[] counts = reserve.executeBatch();
+                conn.releaseSavepoint(batchSavepoint);
+                for (int j = 0; j < counts.length; j++) {
+                    if (counts[j] != 1) {
+                        outcome[pending.get(j)] = "Insufficient stock";
+                    }
+                }
+                return;
+            } catch (SQLException e) {
+                if (TransactionTemplate.isBusy(e)) {
+                    throw e;
+                }
+                reserve.clearBatch();
+                conn.rollback(batchSavepoint);
+            }
+
+            for (int i : pending) {
+                Savepoint savepoint = conn.setSavepoint();
                 try {
-                    if (conn != null) {
-                        conn.setAutoCommit(true);
-                        conn.close();
+                    bindReservation(reserve, lines.get(i));
+                    if (reserve.executeUpdate() != 1) {
+                        outcome[i] = "Insufficient stock";
                     }
+                    conn.releaseSavepoint(savepoint);
                 } catch (SQLException e) {
-                    logger.log(Level.SEVERE, "Error closing connection", e);
+                    if (TransactionTemplate.isBusy(e)) {
+                        throw e;
+                    }
+                    conn.rollback(savepoint);
+                    outcome[i] = e.getMessage();
                 }
             }
         }
 
-        private boolean checkStock(Connection conn, int productId, int quantity)
-                throws SQLException {
-            String sql = "SELECT stock FROM products WHERE product_id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, productId);
-                ResultSet rs = pstmt.executeQuery();
-                return rs.next() && rs.getInt("stock") >= quantity;
+        private static void bindReservation(PreparedStatement reserve, OrderLine line) throws SQLException {
+            reserve.setInt(1, line.quantity());
+            reserve.setInt(2, line.productId());
+            reserve.setInt(3, line.quantity());
+        }
+
+        /*
+         * Reserves stock in the in-memory ledger when the product is tracked there.
+         * Returns false for untracked products, whose stock is reserved by applyOrder instead.
+         */
+        boolean reserveInLedger(int productId, int quantity) throws SQLException {
+            if (stockLedger == null) {
+                return false;
+            }
+            StockLedger.Reservation reservation;
+            try {
+                reservation = stockLedger.reserve(productId, quantity);
+            } catch (UncheckedIOException e) {
+                throw new SQLException("Stock ledger journal unavailable", e);
+            }
+            if (reservation == StockLedger.Reservation.INSUFFICIENT) {
+                throw new SQLException("Insufficient stock");
             }
+            // Journaled before returning; hot products reach products.stock on the ledger's next flush
+            return reservation == StockLedger.Reservation.RESERVED;
         }
 
-        private void updateStock(Connection conn, int productId, int quantity)
-                throws SQLException {
-            String sql = "UPDATE products SET stock = stock - ? WHERE product_id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, quantity);
-                pstmt.setInt(2, productId);
-                pstmt.executeUpdate();
+        /*
+         * Runs one order's statements on conn without committing; the caller owns the transaction.
+         * stockReserved skips the stock UPDATE for orders already reserved in the ledger;
+         * idempotencyKey may be null.
+         */
+        void applyOrder(Connection conn, String idempotencyKey, int customerId, int productId, int quantity,
+                        boolean stockReserved) throws SQLException {
+            // Reserve stock: a single conditional UPDATE, no read-then-write window
+            if (!stockReserved && !reserveStock(conn, productId, quantity)) {
+                throw new SQLException("Insufficient stock");
+            }
+
+            // Create order
+            long orderId = createOrder(conn, idempotencyKey, customerId, productId, quantity);
+
+            // Side work (stats, rollups, notifications) happens asynchronously off the outbox
+            OrderOutbox.append(conn, OrderOutbox.ORDER_PLACED, orderId, customerId, productId, quantity);
+        }
+
+        // Safe to use as a boundary: the transaction already holds the write lock or will fail on commit
+        private long maxOrderId(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(order_id), 0) FROM orders")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+
+        // Undoes a ledger reservation; a no-op for products the ledger doesn't track
+        void releaseReservation(int productId, int quantity) {
+            if (stockLedger != null) {
+                try {
+                    stockLedger.release(productId, quantity);
+                } catch (UncheckedIOException e) {
+                    // The stock stays reserved, which undersells rather than oversells
+                    logger.log(Level.WARNING, "Cannot release stock ledger reservation", e);
+                }
             }
         }
 
-        private void createOrder(Connection conn, int customerId, int productId, int quantity)
+        // Decrements stock only if enough is available; the affected-row count reports the outcome
+        private boolean reserveStock(Connection conn, int productId, int quantity)
                 throws SQLException {
-            String sql = "INSERT INTO orders (customer_id, product_id, quantity) VALUES (?, ?, ?)";
+            String sql = "UPDATE products SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, customerId);
+                pstmt.setInt(1, quantity);
                 pstmt.setInt(2, productId);
                 pstmt.setInt(3, quantity);
-                pstmt.executeUpdate();
+                return pstmt.executeUpdate() == 1;
             }
         }
 
-        private void updateCustomerStats(Connection conn, int customerId)
+        private long createOrder(Connection conn, String idempotencyKey, int customerId, int productId, int quantity)
                 throws SQLException {
-            // This would update customer statistics like total orders, total spent, etc.
+            // RETURNING rather than getGeneratedKeys, which the SQLite driver no longer implements
             String sql = """
-                        UPDATE customer_stats 
-                        SET total_orders = (
-                            SELECT COUNT(*) 
-                            FROM orders 
-                            WHERE customer_id = ?
-                        )
-                        WHERE customer_id = ?
+                        INSERT INTO orders (customer_id, product_id, quantity, idempotency_key)
+                        VALUES (?, ?, ?, ?)
+                        RETURNING order_id
                     """;
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, customerId);
-                pstmt.setInt(2, customerId);
-                pstmt.executeUpdate();
+                pstmt.setInt(2, productId);
+                pstmt.setInt(3, quantity);
+                pstmt.setString(4, idempotencyKey);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Order insert returned no id");
+                    }
+                    return rs.getLong(1);
+                }
+            }
+        }
+    }
+
+    /*
+     * Group commit: concurrent orders are queued for up to maxWaitMillis and applied by a single
+     * writer in one transaction, so N orders share one fsync. Each order runs under its own
+     * savepoint, so a failed order rolls back alone and the rest of the group still commits.
+     */
+    static class GroupCommitOrderIntake implements AutoCloseable {
+        private final OrderProcessor processor;
+        private final long maxWaitMillis;
+        private final int maxBatchSize;
+        private final BlockingQueue<PendingOrder> queue;
+        private final Thread writer;
+        private final LatencyHistogram groupLatency = MetricsRegistry.global().histogram("GroupCommitOrderIntake.commitGroup");
+        private volatile boolean running = true;
+
+        private record PendingOrder(int customerId, int productId, int quantity,
+                                    CompletableFuture<Void> result) {
+        }
+
+        GroupCommitOrderIntake(OrderProcessor processor, long maxWaitMillis, int maxBatchSize) {
+            this.processor = processor;
+            this.maxWaitMillis = maxWaitMillis;
+            this.maxBatchSize = maxBatchSize;
+            this.queue = new LinkedBlockingQueue<>();
+            this.writer = new Thread(this::runWriter, "order-group-commit");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        public CompletableFuture<Void> submit(int customerId, int productId, int quantity) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            if (!running) {
+                result.completeExceptionally(new IllegalStateException("Order intake is closed"));
+                return result;
+            }
+            queue.add(new PendingOrder(customerId, productId, quantity, result));
+            // The writer may have stopped between the check above and the add
+            if (!running && !writer.isAlive()) {
+                failQueued();
+            }
+            return result;
+        }
+
+        // Blocking variant with the same contract as OrderProcessor.processOrder
+        public void processOrder(int customerId, int productId, int quantity) {
+            try {
+                submit(customerId, productId, quantity).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        private void runWriter() {
+            List<PendingOrder> group = new ArrayList<>(maxBatchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    group.add(first);
+
+                    // Collect whatever else arrives within the window
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                    while (group.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        group.add(next);
+                    }
+
+                    long started = System.nanoTime();
+                    try {
+                        commitGroup(group);
+                    } finally {
+                        groupLatency.recordSince(started);
+                    }
+                } catch (InterruptedException e) {
+                    // Nothing was committed for the group being collected; stop taking orders
+                    Thread.currentThread().interrupt();
+                    running = false;
+                    for (PendingOrder order : group) {
+                        order.result().completeExceptionally(new IllegalStateException("Order intake was interrupted"));
+                    }
+                    break;
+                } catch (RuntimeException e) {
+                    // Keep the writer alive; nobody in this group may be left waiting
+                    logger.log(Level.SEVERE, "Error committing order group", e);
+                    for (PendingOrder order : group) {
+                        order.result().completeExceptionally(new RuntimeException("Order processing failed", e));
+                    }
+                } finally {
+                    group.clear();
+                }
+            }
+            failQueued();
+        }
+
+        // Fails orders the writer will never pick up
+        private void failQueued() {
+            PendingOrder order;
+            while ((order = queue.poll()) != null) {
+                order.result().completeExceptionally(new IllegalStateException("Order intake is closed"));
+            }
+        }
+
+        private void commitGroup(List<PendingOrder> group) {
+            int size = group.size();
+            boolean[] stockReserved = new boolean[size];
+            SQLException[] ledgerFailures = new SQLException[size];
+
+            // Ledger reservations happen once, outside the (retryable) transaction
+            for (int i = 0; i < size; i++) {
+                PendingOrder order = group.get(i);
+                try {
+                    stockReserved[i] = processor.reserveInLedger(order.productId(), order.quantity());
+                } catch (SQLException e) {
+                    ledgerFailures[i] = e;
+                }
+            }
+
+            try {
+                SQLException[] rejected = processor.transactions().execute("groupCommit", conn -> {
+                    SQLException[] outcome = ledgerFailures.clone();
+                    for (int i = 0; i < size; i++) {
+                        if (outcome[i] != null) {
+                            continue;
+                        }
+                        PendingOrder order = group.get(i);
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            processor.applyOrder(conn, null, order.customerId(), order.productId(),
+                                    order.quantity(), stockReserved[i]);
+                            conn.releaseSavepoint(savepoint);
+                        } catch (SQLException e) {
+                            if (TransactionTemplate.isBusy(e)) {
+                                // Lock contention isn't this order's fault: retry the whole group
+                                throw e;
+                            }
+                            conn.rollback(savepoint);
+                            outcome[i] = e;
+                        }
+                    }
+                    return outcome;
+                });
+
+                int committed = 0;
+                for (int i = 0; i < size; i++) {
+                    PendingOrder order = group.get(i);
+                    if (rejected[i] == null) {
+                        committed++;
+                        order.result().complete(null);
+                    } else {
+                        if (stockReserved[i]) {
+                            processor.releaseReservation(order.productId(), order.quantity());
+                        }
+                        logger.log(Level.WARNING, "Order rejected within group", rejected[i]);
+                        order.result().completeExceptionally(new RuntimeException("Order processing failed", rejected[i]));
+                    }
+                }
+                log.at(Level.INFO).with("committed", committed).with("orders", size).log("Group committed");
+
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Error committing order group", e);
+                for (int i = 0; i < size; i++) {
+                    PendingOrder order = group.get(i);
+                    if (stockReserved[i]) {
+                        processor.releaseReservation(order.productId(), order.quantity());
+                    }
+                    order.result().completeExceptionally(new RuntimeException("Order processing failed", e));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            // A submit that saw running just before close may have queued after the writer exited
+            failQueued();
         }
     }
-}
\ No newline at end of file
+}
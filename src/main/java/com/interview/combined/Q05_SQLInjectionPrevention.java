@@ -1,8 +1,26 @@
 package com.interview.combined;
 
+import com.interview.util.CredentialService;
 import com.interview.util.DatabaseUtil;
+import com.interview.util.LatencyHistogram;
+import com.interview.util.MetricsRegistry;
+import com.interview.util.RateLimiter;
+import com.interview.util.SessionStore;
+import com.interview.util.TransactionTemplate;
+import com.interview.util.UsernameFilter;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class Q05_SQLInjectionPrevention {
     /*
@@ -30,6 +48,21 @@ public class Q05_SQLInjectionPrevention {
         }
 
         UserDAO userDAO = new UserDAO();
+        try {
+            userDAO.usernames().rebuild();
+        } catch (SQLException e) {
+            // Logins still work, they just can't skip unknown names
+            System.err.println("Username filter error: " + e.getMessage());
+        }
+
+        // Sessions survive restarts through a periodic snapshot
+        Path sessionSnapshot = Path.of("user-sessions.snapshot");
+        try {
+            userDAO.sessions().restore(sessionSnapshot);
+        } catch (IOException e) {
+            System.err.println("Session restore error: " + e.getMessage());
+        }
+        userDAO.sessions().startSnapshots(sessionSnapshot, 30, TimeUnit.SECONDS);
 
         // Insert test user
         userDAO.safeInsertUser("testuser", "password123", "test@example.com");
@@ -47,9 +80,100 @@ public class Q05_SQLInjectionPrevention {
                 userDAO.unsafeLogin(maliciousUsername, maliciousPassword));
         System.out.println("Safe login (with injection): " +
                 userDAO.safeLogin(maliciousUsername, maliciousPassword));
+
+        // Later requests present the token instead of the password
+        String token = userDAO.login("203.0.113.7", "testuser", "password123");
+        SessionStore.Session session = token == null ? null : userDAO.sessions().validate(token);
+        System.out.println("\nSession login: " + (session != null ? "user " + session.userId() : "failed"));
+
+        // A single caller guessing one account's password
+        for (int i = 0; i < 20; i++) {
+            userDAO.safeLogin("203.0.113.7", "testuser", "guess" + i);
+        }
+        System.out.println("\nGuessing burst: " + userDAO.usernameLimiter().denied()
+                + " of 20 attempts refused by the per-username limit");
+
+        System.out.println("\nCredential pool: " + userDAO.credentials().snapshot());
+        System.out.println("Username filter: " + userDAO.usernames().skipped() + " of "
+                + userDAO.usernames().lookups() + " lookups skipped the database");
+
+        // Bulk onboarding reports bad rows instead of failing the batch
+        ProvisioningReport report = userDAO.provisionUsers(List.of(
+                new NewUser("alice", "correct horse", "alice@example.com"),
+                new NewUser("bob", "battery staple", "bob@example.com"),
+                new NewUser("alice", "another", "alice2@example.com"),
+                new NewUser("testuser", "taken", "taken@example.com"),
+                new NewUser("carol", "", "carol@example.com")), 1_000);
+        System.out.println("\nProvisioned " + report.inserted() + " users");
+        for (RowFailure failure : report.failures()) {
+            System.out.println("  row " + failure.index() + " (" + failure.username() + "): " + failure.reason());
+        }
+
+        System.out.println("\nLatency:\n" + MetricsRegistry.global().snapshot());
+
+        userDAO.sessions().close();
+    }
+
+    record NewUser(String username, String password, String email) {
+    }
+
+    record RowFailure(int index, String username, String reason) {
+    }
+
+    record ProvisioningReport(int inserted, List<RowFailure> failures) {
     }
 
     static class UserDAO {
+        // Bound parameters per statement allowed by older SQLite builds
+        private static final int MAX_IN_PARAMETERS = 999;
+
+        private final TransactionTemplate transactions = new TransactionTemplate();
+        private final LatencyHistogram authenticateLatency = MetricsRegistry.global().histogram("UserDAO.authenticate");
+        private final LatencyHistogram insertLatency = MetricsRegistry.global().histogram("UserDAO.safeInsertUser");
+        private final LatencyHistogram provisionChunkLatency = MetricsRegistry.global().histogram("UserDAO.provisionChunk");
+        private final CredentialService credentials;
+        private final UsernameFilter usernames;
+        // Attempts per account, whoever makes them, and per caller, whatever account they target
+        private final RateLimiter usernameLimiter;
+        private final RateLimiter callerLimiter;
+        private final SessionStore sessions;
+
+        UserDAO() {
+            this(new CredentialService(), new UsernameFilter(), new RateLimiter(0.1, 5), new RateLimiter(10, 20),
+                    new SessionStore(30, TimeUnit.MINUTES, 1_000));
+        }
+
+        UserDAO(CredentialService credentials, UsernameFilter usernames,
+                RateLimiter usernameLimiter, RateLimiter callerLimiter, SessionStore sessions) {
+            this.credentials = credentials;
+            this.usernames = usernames;
+            this.usernameLimiter = usernameLimiter;
+            this.callerLimiter = callerLimiter;
+            this.sessions = sessions;
+            usernameLimiter.startEviction(1, TimeUnit.MINUTES);
+            callerLimiter.startEviction(1, TimeUnit.MINUTES);
+        }
+
+        public CredentialService credentials() {
+            return credentials;
+        }
+
+        public UsernameFilter usernames() {
+            return usernames;
+        }
+
+        public RateLimiter usernameLimiter() {
+            return usernameLimiter;
+        }
+
+        public RateLimiter callerLimiter() {
+            return callerLimiter;
+        }
+
+        public SessionStore sessions() {
+            return sessions;
+        }
+
         // UNSAFE method - vulnerable to SQL injection
         public boolean unsafeLogin(String username, String password) {
             String sql = "SELECT * FROM users WHERE username = '" + username +
@@ -66,41 +190,298 @@ public class Q05_SQLInjectionPrevention {
             }
         }
 
-        // SAFE method - using prepared statement
+        // Entry point for untrusted callers; refused attempts never reach the database
+        public boolean safeLogin(String callerId, String username, String password) {
+            boolean mightExist = usernames.mightExist(username);
+            return admit(callerId, username, mightExist) && authenticate(username, password, mightExist) >= 0;
+        }
+
+        // Like safeLogin, but returns a session token for later requests, or null
+        public String login(String callerId, String username, String password) {
+            boolean mightExist = usernames.mightExist(username);
+            if (!admit(callerId, username, mightExist)) {
+                return null;
+            }
+            int userId = authenticate(username, password, mightExist);
+            return userId < 0 ? null : sessions.create(userId, username);
+        }
+
+        // Names the filter rules out get no per-username bucket, so random names can't fill the map.
+        // A null callerId means no caller identity, so only the per-username limit applies.
+        private boolean admit(String callerId, String username, boolean mightExist) {
+            return (callerId == null || callerLimiter.tryAcquire(callerId))
+                    && (!mightExist || usernameLimiter.tryAcquire(username));
+        }
+
+        // SAFE method - using prepared statement; the hash is checked off the query path.
+        // No caller id to limit by, so only the per-username limit applies.
         public boolean safeLogin(String username, String password) {
-            String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
+            return safeLogin(null, username, password);
+        }
+
+        // Returns the user's id, or -1 if the credentials don't check out
+        // mightExist is the caller's one filter lookup for this login
+        private int authenticate(String username, String password, boolean mightExist) {
+            long started = System.nanoTime();
+            try {
+                return checkCredentials(username, password, mightExist);
+            } finally {
+                authenticateLatency.recordSince(started);
+            }
+        }
 
+        private int checkCredentials(String username, String password, boolean mightExist) {
+            // Most credential-stuffing names don't exist. A filter miss saves the query, the
+            // connection and the login pool slot, but not the wall time: the caller still
+            // waits about one hash, or the name's existence would show in the response time.
+            if (!mightExist) {
+                return rejectUnknown(password);
+            }
+
+            String sql = "SELECT user_id, password FROM users WHERE username = ?";
+
+            int userId;
+            String stored;
             try (Connection conn = DatabaseUtil.getConnection();
                  PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
                 pstmt.setString(1, username);
-                pstmt.setString(2, password);
 
                 try (ResultSet rs = pstmt.executeQuery()) {
-                    return rs.next();
+                    if (!rs.next()) {
+                        return rejectUnknown(password);
+                    }
+                    userId = rs.getInt("user_id");
+                    stored = rs.getString("password");
                 }
             } catch (SQLException e) {
                 System.err.println("Login error: " + e.getMessage());
-                return false;
+                return -1;
+            }
+
+            // No connection is held while the hash runs
+            CredentialService.Verification verification = credentials.verify(password, stored);
+            if (verification.outcome() == CredentialService.Outcome.OVERLOADED) {
+                System.err.println("Login error: credential verification is overloaded");
+                return -1;
+            }
+            if (verification.rehash() != null) {
+                upgradeHash(userId, stored, verification.rehash());
+            }
+            return verification.valid() ? userId : -1;
+        }
+
+        // Takes as long as a wrong password for a real user, but off the login pool; always -1
+        private int rejectUnknown(String password) {
+            credentials.verifyUnknown(password);
+            return -1;
+        }
+
+        // Only replaces the hash that was verified, so a concurrent password change wins
+        private void upgradeHash(int userId, String oldHash, String newHash) {
+            String sql = "UPDATE users SET password = ? WHERE user_id = ? AND password = ?";
+
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setString(1, newHash);
+                pstmt.setInt(2, userId);
+                pstmt.setString(3, oldHash);
+                pstmt.executeUpdate();
+
+            } catch (SQLException e) {
+                // The old hash still verifies; the upgrade is retried on the next login
+                System.err.println("Rehash error: " + e.getMessage());
             }
         }
 
         // SAFE method for inserting user
         public void safeInsertUser(String username, String password, String email) {
+            long started = System.nanoTime();
+            try {
+                insertUser(username, password, email);
+            } finally {
+                insertLatency.recordSince(started);
+            }
+        }
+
+        private void insertUser(String username, String password, String email) {
             String sql = "INSERT INTO users (username, password, email) VALUES (?, ?, ?)";
 
+            String hash;
+            try {
+                hash = credentials.hash(password);
+            } catch (RejectedExecutionException e) {
+                System.err.println("Insert error: " + e.getMessage());
+                return;
+            }
+
             try (Connection conn = DatabaseUtil.getConnection();
                  PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
                 pstmt.setString(1, username);
-                pstmt.setString(2, password); // In real app, should be hashed
+                pstmt.setString(2, hash);
                 pstmt.setString(3, email);
 
                 pstmt.executeUpdate();
+                usernames.add(username);
 
             } catch (SQLException e) {
                 System.err.println("Insert error: " + e.getMessage());
             }
         }
+
+        /**
+         * Inserts users in chunks of batchSize, one transaction per chunk. Invalid rows, repeats
+         * within a chunk and collisions with existing users are reported by input index and
+         * skipped; the rest still go in. Passwords are hashed across all cores, off the login pool.
+         */
+        public ProvisioningReport provisionUsers(List<NewUser> users, int batchSize) {
+            List<RowFailure> failures = new ArrayList<>();
+            int inserted = 0;
+            ForkJoinPool hashPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                for (int start = 0; start < users.size(); start += batchSize) {
+                    long chunkStarted = System.nanoTime();
+                    inserted += provisionChunk(users, start, Math.min(users.size(), start + batchSize),
+                            hashPool, failures);
+                    provisionChunkLatency.recordSince(chunkStarted);
+                }
+            } finally {
+                hashPool.shutdown();
+            }
+            failures.sort(Comparator.comparingInt(RowFailure::index));
+            return new ProvisioningReport(inserted, failures);
+        }
+
+        private int provisionChunk(List<NewUser> users, int start, int end, ForkJoinPool hashPool,
+                                   List<RowFailure> failures) {
+            // Earlier chunks are already in the table, so only repeats within this one need tracking
+            List<Integer> pending = new ArrayList<>();
+            Set<String> chunkUsernames = new HashSet<>();
+            Set<String> chunkEmails = new HashSet<>();
+            for (int i = start; i < end; i++) {
+                NewUser user = users.get(i);
+                String problem = validateNewUser(user);
+                if (problem == null && chunkUsernames.contains(user.username())) {
+                    problem = "duplicate username in batch";
+                } else if (problem == null && chunkEmails.contains(user.email())) {
+                    problem = "duplicate email in batch";
+                }
+                if (problem != null) {
+                    failures.add(new RowFailure(i, user.username(), problem));
+                    continue;
+                }
+                chunkUsernames.add(user.username());
+                chunkEmails.add(user.email());
+                pending.add(i);
+            }
+
+            try {
+                // Names the filter rules out can't collide, so they skip the lookup
+                List<String> maybeTaken = new ArrayList<>();
+                for (String username : chunkUsernames) {
+                    if (usernames.mightExist(username)) {
+                        maybeTaken.add(username);
+                    }
+                }
+                Set<String> takenUsernames = existing("username", maybeTaken);
+                Set<String> takenEmails = existing("email", new ArrayList<>(chunkEmails));
+
+                List<Integer> accepted = new ArrayList<>(pending.size());
+                for (int i : pending) {
+                    NewUser user = users.get(i);
+                    if (takenUsernames.contains(user.username())) {
+                        failures.add(new RowFailure(i, user.username(), "username already exists"));
+                    } else if (takenEmails.contains(user.email())) {
+                        failures.add(new RowFailure(i, user.username(), "email already exists"));
+                    } else {
+                        accepted.add(i);
+                    }
+                }
+                pending = accepted;
+                if (accepted.isEmpty()) {
+                    return 0;
+                }
+
+                // Hash before the transaction opens so the write lock is held only for the inserts
+                List<String> passwords = new ArrayList<>(accepted.size());
+                for (int i : accepted) {
+                    passwords.add(users.get(i).password());
+                }
+                List<String> hashes = credentials.hashAll(passwords, hashPool);
+
+                String sql = "INSERT INTO users (username, password, email) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+                int[] counts = transactions.execute("provisionUsers", conn -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        for (int k = 0; k < accepted.size(); k++) {
+                            NewUser user = users.get(accepted.get(k));
+                            pstmt.setString(1, user.username());
+                            pstmt.setString(2, hashes.get(k));
+                            pstmt.setString(3, user.email());
+                            pstmt.addBatch();
+                        }
+                        return pstmt.executeBatch();
+                    }
+                });
+
+                int inserted = 0;
+                for (int k = 0; k < counts.length; k++) {
+                    NewUser user = users.get(accepted.get(k));
+                    if (counts[k] > 0) {
+                        usernames.add(user.username());
+                        inserted++;
+                    } else {
+                        // Taken by a concurrent insert since the lookup
+                        failures.add(new RowFailure(accepted.get(k), user.username(), "username or email already exists"));
+                    }
+                }
+                return inserted;
+            } catch (SQLException | RuntimeException e) {
+                for (int i : pending) {
+                    failures.add(new RowFailure(i, users.get(i).username(), "not inserted: " + e.getMessage()));
+                }
+                return 0;
+            }
+        }
+
+        private String validateNewUser(NewUser user) {
+            if (user.username() == null || user.username().isBlank()) {
+                return "username is required";
+            }
+            if (user.password() == null || user.password().isEmpty()) {
+                return "password is required";
+            }
+            if (user.email() == null || !user.email().contains("@")) {
+                return "email is invalid";
+            }
+            return null;
+        }
+
+        // column is always one of the literals above, never caller input
+        private Set<String> existing(String column, List<String> values) throws SQLException {
+            Set<String> found = new HashSet<>();
+            if (values.isEmpty()) {
+                return found;
+            }
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                for (int from = 0; from < values.size(); from += MAX_IN_PARAMETERS) {
+                    List<String> slice = values.subList(from, Math.min(values.size(), from + MAX_IN_PARAMETERS));
+                    String sql = "SELECT " + column + " FROM users WHERE " + column + " IN ("
+                            + String.join(", ", Collections.nCopies(slice.size(), "?")) + ")";
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        for (int i = 0; i < slice.size(); i++) {
+                            pstmt.setString(i + 1, slice.get(i));
+                        }
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                found.add(rs.getString(1));
+                            }
+                        }
+                    }
+                }
+            }
+            return found;
+        }
     }
-}
\ No newline at end of file
+}
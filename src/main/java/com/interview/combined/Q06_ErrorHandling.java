@@ -1,12 +1,26 @@
 package com.interview.combined;
 
+import com.interview.util.AsyncLogHandler;
 import com.interview.util.DatabaseUtil;
+import com.interview.util.LatencyHistogram;
+import com.interview.util.MetricsRegistry;
+import com.interview.util.RotatingFileHandler;
+import com.interview.util.StagedUpsert;
+import com.interview.util.StockLedger;
+import com.interview.util.StructuredLogger;
+import com.interview.util.TransactionTemplate;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.*;
 
 public class Q06_ErrorHandling {
@@ -16,10 +30,12 @@ public class Q06_ErrorHandling {
      */
 
     private static final Logger logger = Logger.getLogger(Q06_ErrorHandling.class.getName());
+    private static final StructuredLogger log = StructuredLogger.of(logger);
 
     public static void main(String[] args) {
         ProductService service = new ProductService();
         service.setupLogging();
+        MetricsRegistry.Snapshot start = MetricsRegistry.global().snapshot();
 
         try {
             // Test valid product
@@ -36,6 +52,18 @@ public class Q06_ErrorHandling {
             }
         }
 
+        try {
+            // Test bulk add: bad rows are reported, not thrown
+            BulkAddResult result = service.addProducts(List.of(
+                    new ProductInput("Bulk Product A", 9.99, 100),
+                    new ProductInput("Bulk Product B", 0, 5),
+                    new ProductInput(" ", 4.50, 1)));
+            System.out.println("Bulk add: " + result.added() + " added, rejected " + result.rejected());
+
+        } catch (DatabaseException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+
         try {
             // Test stock update
             service.updateStock(1, 5);
@@ -49,6 +77,9 @@ public class Q06_ErrorHandling {
             if (e.getCause() != null) {
                 System.err.println("Caused by: " + e.getCause().getMessage());
             }
+        } finally {
+            // Timings for this run only, whatever else shares the registry
+            System.out.println("\nLatency this run:\n" + MetricsRegistry.global().snapshot().minus(start));
         }
     }
 
@@ -61,16 +92,92 @@ public class Q06_ErrorHandling {
         public DatabaseException(String message, Throwable cause) {
             super(message, cause);
         }
+
+        // For expected failures: no stack trace to fill in, no suppressed list to grow
+        protected DatabaseException(String message, boolean writableStackTrace) {
+            super(message, null, false, writableStackTrace);
+        }
+    }
+
+    enum ValidationError {
+        EMPTY_NAME("Product name cannot be empty"),
+        NON_POSITIVE_PRICE("Price must be greater than zero"),
+        NEGATIVE_STOCK("Stock cannot be negative");
+
+        private final String message;
+        private final InvalidProductException exception;
+
+        ValidationError(String message) {
+            this.message = message;
+            this.exception = new InvalidProductException(this);
+        }
+
+        public String message() {
+            return message;
+        }
+
+        // Stackless and immutable, so one instance per error can be thrown from any thread
+        public InvalidProductException exception() {
+            return exception;
+        }
+    }
+
+    static class InvalidProductException extends DatabaseException {
+        private static final long serialVersionUID = 1L;
+
+        private final ValidationError error;
+
+        private InvalidProductException(ValidationError error) {
+            super("Invalid product data: " + error.message(), false);
+            this.error = error;
+        }
+
+        public ValidationError error() {
+            return error;
+        }
+    }
+
+    record ProductInput(String name, double price, int stock) {
+    }
+
+    record ProductRejection(int index, ValidationError error) {
+    }
+
+    record BulkAddResult(int added, List<ProductRejection> rejected) {
     }
 
     // Service class demonstrating error handling
     static class ProductService {
+        private final TransactionTemplate transactions;
+        // Told about restocks so its in-memory counts don't go stale; null when no ledger runs
+        private final StockLedger stockLedger;
+        // Rejections by ValidationError ordinal; counted instead of logged
+        private final AtomicLongArray validationFailures = new AtomicLongArray(ValidationError.values().length);
+
+        // Per-operation timings, including failures; these replace the FINER entry/return traces
+        private final LatencyHistogram addProductLatency = MetricsRegistry.global().histogram("ProductService.addProduct");
+        private final LatencyHistogram addProductsLatency = MetricsRegistry.global().histogram("ProductService.addProducts");
+        private final LatencyHistogram updateStockLatency = MetricsRegistry.global().histogram("ProductService.updateStock");
+        private final LongAdder databaseErrors = MetricsRegistry.global().counter("ProductService.databaseErrors");
+
+        ProductService() {
+            this(null, new TransactionTemplate());
+        }
+
+        ProductService(StockLedger stockLedger, TransactionTemplate transactions) {
+            this.stockLedger = stockLedger;
+            this.transactions = transactions;
+        }
+
         public void setupLogging() {
             try {
-                // Create file handler
-                FileHandler fileHandler = new FileHandler("product-service.log", true);
+                // Create file handler; writes happen on a background thread, not in the request.
+                // Rolls over at 10 MB or daily, keeping 14 compressed segments.
+                RotatingFileHandler fileHandler = new RotatingFileHandler(Path.of("product-service.log"),
+                        10L * 1024 * 1024, 1, TimeUnit.DAYS, 14);
                 fileHandler.setFormatter(new SimpleFormatter());
-                logger.addHandler(fileHandler);
+                logger.addHandler(new AsyncLogHandler(fileHandler, 8_192,
+                        AsyncLogHandler.OverflowPolicy.DROP_BELOW_LEVEL));
 
                 // Add console handler
                 ConsoleHandler consoleHandler = new ConsoleHandler();
@@ -83,94 +190,131 @@ public class Q06_ErrorHandling {
         }
 
         public void addProduct(String name, double price, int stock) throws DatabaseException {
-            logger.entering(getClass().getName(), "addProduct");
+            long started = System.nanoTime();
 
-            try (Connection conn = DatabaseUtil.getConnection()) {
-                // Validate input
-                validateProductInput(name, price, stock);
+            try {
+                // Validate input before opening a connection; rejections cost no stack walk or log write
+                ValidationError error = validateProductInput(name, price, stock);
+                if (error != null) {
+                    validationFailures.incrementAndGet(error.ordinal());
+                    throw error.exception();
+                }
 
                 String sql = "INSERT INTO products (name, price, stock) VALUES (?, ?, ?)";
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                try (Connection conn = DatabaseUtil.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
                     pstmt.setString(1, name);
                     pstmt.setDouble(2, price);
                     pstmt.setInt(3, stock);
                     pstmt.executeUpdate();
                 }
 
-                logger.info(String.format("Product added successfully: %s", name));
+                log.at(Level.INFO).with("name", name).log("Product added successfully");
 
             } catch (SQLException e) {
+                databaseErrors.increment();
                 logger.log(Level.SEVERE, "Database error while adding product", e);
                 throw new DatabaseException("Error adding product", e);
-            } catch (IllegalArgumentException e) {
-                logger.log(Level.WARNING, "Invalid input for product", e);
-                throw new DatabaseException("Invalid product data: " + e.getMessage());
             } finally {
-                logger.exiting(getClass().getName(), "addProduct");
+                addProductLatency.recordSince(started);
+            }
+        }
+
+        /**
+         * Validates every product first, then inserts the valid ones with one staged merge in one
+         * transaction. Invalid products are returned by index rather than thrown.
+         */
+        public BulkAddResult addProducts(List<ProductInput> products) throws DatabaseException {
+            long started = System.nanoTime();
+
+            try {
+                List<ProductInput> valid = new ArrayList<>(products.size());
+                List<ProductRejection> rejected = new ArrayList<>();
+                for (int i = 0; i < products.size(); i++) {
+                    ProductInput product = products.get(i);
+                    ValidationError error = validateProductInput(product.name(), product.price(), product.stock());
+                    if (error == null) {
+                        valid.add(product);
+                    } else {
+                        validationFailures.incrementAndGet(error.ordinal());
+                        rejected.add(new ProductRejection(i, error));
+                    }
+                }
+
+                if (!valid.isEmpty()) {
+                    List<Object[]> rows = new ArrayList<>(valid.size());
+                    for (ProductInput product : valid) {
+                        rows.add(new Object[]{null, product.name(), product.price(), product.stock()});
+                    }
+                    // One staged, set-based insert; the null keys get generated ids
+                    transactions.execute("addProducts", conn -> StagedUpsert.merge(conn, StagedUpsert.Target.PRODUCTS, rows));
+                }
+
+                log.at(Level.INFO).with("added", valid.size()).with("rejected", rejected.size())
+                        .log("Products added in bulk");
+                return new BulkAddResult(valid.size(), rejected);
+
+            } catch (SQLException e) {
+                databaseErrors.increment();
+                logger.log(Level.SEVERE, "Database error while adding products", e);
+                throw new DatabaseException("Error adding products", e);
+            } finally {
+                addProductsLatency.recordSince(started);
             }
         }
 
-        private void validateProductInput(String name, double price, int stock) {
+        // Returns the first problem found, or null if the input is valid
+        private ValidationError validateProductInput(String name, double price, int stock) {
             if (name == null || name.trim().isEmpty()) {
-                throw new IllegalArgumentException("Product name cannot be empty");
+                return ValidationError.EMPTY_NAME;
             }
             if (price <= 0) {
-                throw new IllegalArgumentException("Price must be greater than zero");
+                return ValidationError.NON_POSITIVE_PRICE;
             }
             if (stock < 0) {
-                throw new IllegalArgumentException("Stock cannot be negative");
+                return ValidationError.NEGATIVE_STOCK;
             }
+            return null;
+        }
+
+        public long validationFailures(ValidationError error) {
+            return validationFailures.get(error.ordinal());
         }
 
         public void updateStock(int productId, int quantity) throws DatabaseException {
-            logger.entering(getClass().getName(), "updateStock");
+            long started = System.nanoTime();
 
-            Connection conn = null;
             try {
-                conn = DatabaseUtil.getConnection();
-                conn.setAutoCommit(false);
-
-                // Check if product exists
-                if (!productExists(conn, productId)) {
-                    throw new IllegalArgumentException("Product not found: " + productId);
-                }
-
-                // Update stock
-                String sql = "UPDATE products SET stock = stock + ? WHERE product_id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setInt(1, quantity);
-                    pstmt.setInt(2, productId);
-                    int updated = pstmt.executeUpdate();
+                // Retried as a whole if another writer holds the database lock
+                int updated = transactions.execute("updateStock", conn -> {
+                    // Check if product exists
+                    if (!productExists(conn, productId)) {
+                        throw new IllegalArgumentException("Product not found: " + productId);
+                    }
 
-                    if (updated == 0) {
-                        throw new DatabaseException("No product updated");
+                    // Update stock
+                    String sql = "UPDATE products SET stock = stock + ? WHERE product_id = ?";
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setInt(1, quantity);
+                        pstmt.setInt(2, productId);
+                        return pstmt.executeUpdate();
                     }
-                }
+                });
 
-                conn.commit();
-                logger.info(String.format("Stock updated for product %d: %d", productId, quantity));
+                if (updated == 0) {
+                    throw new DatabaseException("No product updated");
+                }
+                if (stockLedger != null) {
+                    stockLedger.adjust(productId, quantity);
+                }
+                log.at(Level.INFO).with("productId", productId).with("quantity", quantity).log("Stock updated");
 
             } catch (SQLException e) {
+                databaseErrors.increment();
                 logger.log(Level.SEVERE, "Database error while updating stock", e);
-                if (conn != null) {
-                    try {
-                        conn.rollback();
-                        logger.info("Transaction rolled back");
-                    } catch (SQLException ex) {
-                        logger.log(Level.SEVERE, "Error during rollback", ex);
-                    }
-                }
                 throw new DatabaseException("Error updating stock", e);
             } finally {
-                if (conn != null) {
-                    try {
-                        conn.setAutoCommit(true);
-                        conn.close();
-                    } catch (SQLException e) {
-                        logger.log(Level.WARNING, "Error closing connection", e);
-                    }
-                }
-                logger.exiting(getClass().getName(), "updateStock");
+                updateStockLatency.recordSince(started);
             }
         }
 
@@ -0,0 +1,188 @@
+package com.interview.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * java.util.logging handler that moves formatting and I/O off the logging thread.
+ *
+ * publish only puts the record into a bounded ring buffer. A background thread drains it in
+ * batches into the delegate handler and flushes the delegate once per batch. When the buffer
+ * is full, the overflow policy decides whether the caller waits or the record is dropped.
+ * Dropped records are counted, and a summary is written to the delegate once there is room.
+ *
+ * LogManager closes handlers from its shutdown hook, and close drains the buffer, so records
+ * already accepted are written on normal exit. The delegate is closed by the writer thread once
+ * it has written the last record, so a slow drain is never cut off by a closed delegate.
+ */
+public class AsyncLogHandler extends Handler {
+    public enum OverflowPolicy {
+        // Wait for room; nothing is lost, but a stalled disk stalls the caller
+        BLOCK,
+        // Drop records below the threshold level; records at or above it wait for room
+        DROP_BELOW_LEVEL,
+        // Keep one in every sampleEvery overflowing records (waiting for room) and drop the rest
+        SAMPLE
+    }
+
+    private final Handler delegate;
+    private final ArrayBlockingQueue<LogRecord> buffer;
+    private final OverflowPolicy policy;
+    private final int dropThreshold;
+    private final int sampleEvery;
+    private final int batchSize;
+    private final boolean inferCaller;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final AtomicLong overflowSequence = new AtomicLong();
+    private long droppedReported;
+
+    public AsyncLogHandler(Handler delegate, int capacity, OverflowPolicy policy) {
+        this(delegate, capacity, policy, Level.WARNING, 10, 256, true);
+    }
+
+    /**
+     * @param dropThreshold records below this level are dropped under DROP_BELOW_LEVEL
+     * @param sampleEvery   one in this many overflowing records is kept under SAMPLE
+     * @param inferCaller   resolve the source class and method before queueing; needed when
+     *                      the formatter prints them, since inference walks the current stack
+     */
+    public AsyncLogHandler(Handler delegate, int capacity, OverflowPolicy policy, Level dropThreshold,
+                           int sampleEvery, int batchSize, boolean inferCaller) {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.dropThreshold = dropThreshold.intValue();
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.batchSize = batchSize;
+        this.inferCaller = inferCaller;
+        this.writer = new Thread(this::drain, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+        if (inferCaller) {
+            // Forces inference now, on the caller's stack; the writer thread would find its own
+            record.getSourceClassName();
+        }
+        if (buffer.offer(record)) {
+            return;
+        }
+
+        boolean keep = switch (policy) {
+            case BLOCK -> true;
+            case DROP_BELOW_LEVEL -> record.getLevel().intValue() >= dropThreshold;
+            case SAMPLE -> overflowSequence.getAndIncrement() % sampleEvery == 0;
+        };
+        if (!keep) {
+            dropped.increment();
+            return;
+        }
+
+        blocked.increment();
+        try {
+            // Bounded waits, so a close() that stops the writer can't leave the caller stuck
+            while (!buffer.offer(record, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    dropped.increment();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        List<LogRecord> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                LogRecord first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                for (LogRecord record : batch) {
+                    delegate.publish(record);
+                }
+                reportDrops();
+                delegate.flush();
+            } catch (InterruptedException e) {
+                // Nobody interrupts the writer on purpose; keep draining until close()
+                Thread.interrupted();
+            } catch (RuntimeException e) {
+                reportError("Async log write failed", e, ErrorManager.WRITE_FAILURE);
+            } finally {
+                batch.clear();
+            }
+        }
+        delegate.close();
+    }
+
+    // Only called on the writer thread
+    private void reportDrops() {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            LogRecord summary = new LogRecord(Level.WARNING,
+                    (total - droppedReported) + " log records dropped by async handler (buffer full)");
+            summary.setLoggerName(AsyncLogHandler.class.getName());
+            delegate.publish(summary);
+            droppedReported = total;
+        }
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Records that found the buffer full and waited for room
+    public long blockedCount() {
+        return blocked.sum();
+    }
+
+    public int queued() {
+        return buffer.size();
+    }
+
+    // Only flushes the delegate; records still queued are written by the background thread
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        // The writer notices within one poll timeout, empties the buffer, closes the delegate and exits
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            reportError("Async log writer still draining after 5 s; it closes the delegate when done",
+                    null, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.interview.util;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Turns "apply this SET expression to these ids" into a handful of set-based statements
+ * instead of one UPDATE per id.
+ *
+ * Contiguous ids are collapsed into BETWEEN ranges, the leftover sparse ids go into IN lists,
+ * and a large sparse set is loaded into a TEMP table and joined in a single UPDATE.
+ *
+ * The planner never commits; the caller owns the transaction.
+ * The SET expression is inlined into the SQL, so it must be a trusted constant
+ * (e.g. "price = price * 1.1"), never user input.
+ */
+public class BulkUpdatePlanner {
+    // Conservative bound on parameters per statement (SQLITE_MAX_VARIABLE_NUMBER on old builds)
+    private static final int MAX_PARAMS_PER_STATEMENT = 999;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final int minRangeLength;
+    private final int tempTableThreshold;
+
+    public BulkUpdatePlanner() {
+        this(3, 1000);
+    }
+
+    /**
+     * @param minRangeLength     shortest run of consecutive ids worth a BETWEEN predicate
+     * @param tempTableThreshold number of sparse ids above which a TEMP table join is used
+     */
+    public BulkUpdatePlanner(int minRangeLength, int tempTableThreshold) {
+        if (minRangeLength < 2) {
+            throw new IllegalArgumentException("minRangeLength must be at least 2");
+        }
+        this.minRangeLength = minRangeLength;
+        this.tempTableThreshold = tempTableThreshold;
+    }
+
+    public Plan plan(Collection<Integer> ids) {
+        int[] sorted = ids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+
+        List<int[]> ranges = new ArrayList<>();
+        int[] singles = new int[sorted.length];
+        int singleCount = 0;
+
+        int start = 0;
+        while (start < sorted.length) {
+            int end = start;
+            while (end + 1 < sorted.length && sorted[end + 1] == sorted[end] + 1) {
+                end++;
+            }
+            if (end - start + 1 >= minRangeLength) {
+                ranges.add(new int[]{sorted[start], sorted[end]});
+            } else {
+                for (int i = start; i <= end; i++) {
+                    singles[singleCount++] = sorted[i];
+                }
+            }
+            start = end + 1;
+        }
+
+        return new Plan(sorted.length, ranges, Arrays.copyOf(singles, singleCount),
+                singleCount > tempTableThreshold);
+    }
+
+    /**
+     * Applies {@code setClause} to every row of {@code table} whose {@code idColumn} is in {@code ids}.
+     *
+     * @return number of rows updated
+     */
+    public int update(Connection conn, String table, String idColumn, String setClause,
+                      Collection<Integer> ids) throws SQLException {
+        requireIdentifier(table);
+        requireIdentifier(idColumn);
+
+        Plan plan = plan(ids);
+        String prefix = "UPDATE " + table + " SET " + setClause + " WHERE ";
+        int updated = 0;
+
+        // Ranges: two parameters each, OR-ed together
+        int rangesPerStatement = MAX_PARAMS_PER_STATEMENT / 2;
+        for (int from = 0; from < plan.ranges.size(); from += rangesPerStatement) {
+            List<int[]> chunk = plan.ranges.subList(from, Math.min(from + rangesPerStatement, plan.ranges.size()));
+            String predicate = String.join(" OR ",
+                    Collections.nCopies(chunk.size(), idColumn + " BETWEEN ? AND ?"));
+
+            try (PreparedStatement pstmt = conn.prepareStatement(prefix + predicate)) {
+                int param = 1;
+                for (int[] range : chunk) {
+                    pstmt.setInt(param++, range[0]);
+                    pstmt.setInt(param++, range[1]);
+                }
+                updated += pstmt.executeUpdate();
+            }
+        }
+
+        if (plan.singles.length == 0) {
+            return updated;
+        }
+
+        if (plan.useTempTable) {
+            updated += updateViaTempTable(conn, prefix, idColumn, plan.singles);
+        } else {
+            for (int from = 0; from < plan.singles.length; from += MAX_PARAMS_PER_STATEMENT) {
+                int to = Math.min(from + MAX_PARAMS_PER_STATEMENT, plan.singles.length);
+                String placeholders = String.join(", ", Collections.nCopies(to - from, "?"));
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        prefix + idColumn + " IN (" + placeholders + ")")) {
+                    for (int i = from; i < to; i++) {
+                        pstmt.setInt(i - from + 1, plan.singles[i]);
+                    }
+                    updated += pstmt.executeUpdate();
+                }
+            }
+        }
+
+        return updated;
+    }
+
+    private int updateViaTempTable(Connection conn, String prefix, String idColumn, int[] ids)
+            throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS bulk_update_ids (id INTEGER PRIMARY KEY)");
+            stmt.execute("DELETE FROM temp.bulk_update_ids");
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO temp.bulk_update_ids (id) VALUES (?)")) {
+            for (int id : ids) {
+                pstmt.setInt(1, id);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            int updated = stmt.executeUpdate(
+                    prefix + idColumn + " IN (SELECT id FROM temp.bulk_update_ids)");
+            stmt.execute("DELETE FROM temp.bulk_update_ids");
+            return updated;
+        }
+    }
+
+    private static void requireIdentifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid SQL identifier: " + name);
+        }
+    }
+
+    // Result of planning, exposed so callers can log or inspect the statement shape
+    public static class Plan {
+        private final int idCount;
+        private final List<int[]> ranges;
+        private final int[] singles;
+        private final boolean useTempTable;
+
+        Plan(int idCount, List<int[]> ranges, int[] singles, boolean useTempTable) {
+            this.idCount = idCount;
+            this.ranges = ranges;
+            this.singles = singles;
+            this.useTempTable = useTempTable;
+        }
+
+        public int getIdCount() {
+            return idCount;
+        }
+
+        public int getRangeCount() {
+            return ranges.size();
+        }
+
+        public int getSingleCount() {
+            return singles.length;
+        }
+
+        public boolean usesTempTable() {
+            return useTempTable;
+        }
+
+        public int getStatementCount() {
+            int statements = (ranges.size() + MAX_PARAMS_PER_STATEMENT / 2 - 1) / (MAX_PARAMS_PER_STATEMENT / 2);
+            if (singles.length > 0) {
+                statements += useTempTable ? 1 : (singles.length + MAX_PARAMS_PER_STATEMENT - 1) / MAX_PARAMS_PER_STATEMENT;
+            }
+            return statements;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Plan[ids=%d, ranges=%d, singles=%d, tempTable=%s, statements=%d]",
+                    idCount, ranges.size(), singles.length, useTempTable, getStatementCount());
+        }
+    }
+}
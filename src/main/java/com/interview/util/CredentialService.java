@@ -0,0 +1,243 @@
+package com.interview.util;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password hashing and verification on a dedicated, bounded pool.
+ *
+ * Slow hashes are CPU-bound by design, so they get a fixed number of threads and a short
+ * queue. When the queue is full, or a caller has waited longer than the timeout, the request
+ * is refused with OVERLOADED instead of piling up. A login burst then costs at most the pool's
+ * share of the CPU and can't starve other request work.
+ *
+ * A successful verification against a legacy or lower-cost hash also returns a fresh hash
+ * at the current cost, so callers can upgrade stored credentials as users log in.
+ * {@link #verifyUnknown} does the same work against a fixed dummy hash, so a login for a
+ * username that doesn't exist takes as long as one with a wrong password. Dummy hashes run on
+ * the caller's thread under their own small budget, never on the pool: a flood of made-up names
+ * can't queue ahead of real users. Past the budget the caller just waits as long as a dummy
+ * hash last took, which costs no CPU and still looks like a wrong password.
+ *
+ * PBKDF2 doesn't respond to interrupts: a timed-out request stops the caller waiting, but its
+ * hash keeps a pool thread busy until it finishes. The queue capacity and timeout should be
+ * sized so that a full queue drains in about one timeout, e.g. queue ~ threads x timeout / hash time.
+ */
+public class CredentialService implements AutoCloseable {
+    public enum Outcome {
+        VALID,
+        INVALID,
+        // Pool saturated or timed out; the password was not checked
+        OVERLOADED
+    }
+
+    public record Verification(Outcome outcome, String rehash) {
+        public boolean valid() {
+            return outcome == Outcome.VALID;
+        }
+    }
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor pool;
+    private final long timeoutMillis;
+    // Hash of a random password at the current cost; made on first use, since it costs one hash
+    private volatile String dummyHash;
+    // Dummy hashes allowed to run at once, and how long the last one took
+    private final Semaphore unknownPermits;
+    private volatile long unknownHashNanos;
+
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rehashes = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder unknownDelayed = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    public CredentialService() {
+        this(new PasswordHasher(210_000), Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 32, 2_000);
+    }
+
+    /**
+     * @param threads       hashing threads; the most CPU that logins can take. Dummy hashes for
+     *                      unknown users get the same number of permits on their callers' threads
+     * @param queueCapacity requests allowed to wait for a thread before new ones are refused
+     * @param timeoutMillis longest a caller waits, queueing included; a timed-out hash still
+     *                      finishes on its pool thread
+     */
+    public CredentialService(PasswordHasher hasher, int threads, int queueCapacity, long timeoutMillis) {
+        this.hasher = hasher;
+        this.timeoutMillis = timeoutMillis;
+        this.unknownPermits = new Semaphore(threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "credential-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public Verification verify(String password, String stored) {
+        long submitted = System.nanoTime();
+        Future<Verification> future;
+        try {
+            future = pool.submit(() -> {
+                queueNanos.add(System.nanoTime() - submitted);
+                if (!hasher.verify(password, stored)) {
+                    return new Verification(Outcome.INVALID, null);
+                }
+                return new Verification(Outcome.VALID, hasher.needsRehash(stored) ? hasher.hash(password) : null);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return new Verification(Outcome.OVERLOADED, null);
+        }
+
+        Verification result;
+        try {
+            result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            return new Verification(Outcome.OVERLOADED, null);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return new Verification(Outcome.OVERLOADED, null);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+
+        long latency = System.nanoTime() - submitted;
+        verifications.increment();
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+        if (result.outcome() == Outcome.INVALID) {
+            invalid.increment();
+        } else if (result.rehash() != null) {
+            rehashes.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Verification for a user that doesn't exist: always INVALID, after about as long as a real
+     * check takes, so response times don't reveal which usernames exist. Runs on the calling
+     * thread; at most {@code threads} dummy hashes run at once, and callers past that sleep
+     * for the duration of the last one instead.
+     */
+    public Verification verifyUnknown(String password) {
+        unknown.increment();
+        if (!unknownPermits.tryAcquire()) {
+            unknownDelayed.increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(unknownHashNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Verification(Outcome.INVALID, null);
+        }
+        try {
+            long started = System.nanoTime();
+            hasher.verify(password, dummyHash());
+            unknownHashNanos = System.nanoTime() - started;
+            return new Verification(Outcome.INVALID, null);
+        } finally {
+            unknownPermits.release();
+        }
+    }
+
+    // Hash of a random password; racing threads may each make one, any of them will do
+    private String dummyHash() {
+        String dummy = dummyHash;
+        if (dummy == null) {
+            byte[] secret = new byte[16];
+            new SecureRandom().nextBytes(secret);
+            dummy = hasher.hash(Base64.getEncoder().encodeToString(secret));
+            dummyHash = dummy;
+        }
+        return dummy;
+    }
+
+    // Hashes on the pool too, so registrations share the same CPU budget as logins
+    public String hash(String password) {
+        Future<String> future;
+        try {
+            future = pool.submit(() -> hasher.hash(password));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            throw new RejectedExecutionException("Password hashing timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Hashes a batch on the given pool rather than the login pool, so bulk jobs can use every
+     * core without crowding out logins. Results are in input order.
+     */
+    public List<String> hashAll(List<String> passwords, ForkJoinPool workers) {
+        try {
+            return workers.submit(() -> passwords.parallelStream().map(hasher::hash).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    public Metrics snapshot() {
+        long count = verifications.sum();
+        return new Metrics(count, invalid.sum(), rejected.sum(), timeouts.sum(), rehashes.sum(),
+                unknown.sum(), unknownDelayed.sum(),
+                count == 0 ? 0 : latencyNanos.sum() / count / 1_000,
+                maxLatencyNanos.get() / 1_000,
+                count == 0 ? 0 : queueNanos.sum() / count / 1_000,
+                pool.getQueue().size());
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    public record Metrics(long verifications, long invalid, long rejected, long timeouts, long rehashes,
+                          long unknown, long unknownDelayed, long meanLatencyMicros, long maxLatencyMicros, long meanQueueMicros, int queueDepth) {
+        @Override
+        public String toString() {
+            return String.format("verifications=%d, invalid=%d, rejected=%d, timeouts=%d, rehashes=%d, "
+                            + "unknown=%d (delayed %d), latency mean=%d us (max %d us), queue wait mean=%d us, queued=%d",
+                    verifications, invalid, rejected, timeouts, rehashes, unknown, unknownDelayed,
+                    meanLatencyMicros, maxLatencyMicros, meanQueueMicros, queueDepth);
+        }
+    }
+}
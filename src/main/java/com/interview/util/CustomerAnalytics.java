@@ -0,0 +1,198 @@
+package com.interview.util;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Materializes per-customer metrics into customer_analytics with a single streaming pass
+ * over orders joined to products.
+ *
+ * Rows arrive ordered by customer and product, so every metric, distinct products included,
+ * is computed with a fixed-size accumulator per customer, whatever the customer's history.
+ * Results are written in batches and committed together, so readers never see a
+ * half-written table. Spend uses the current product price; orders don't record the price
+ * paid.
+ */
+public class CustomerAnalytics {
+
+    public enum Metric {
+        TOTAL_ORDERS("total_orders", "INTEGER"),
+        TOTAL_QUANTITY("total_quantity", "INTEGER"),
+        TOTAL_SPEND("total_spend", "DECIMAL(12,2)"),
+        AVERAGE_BASKET("average_basket", "DECIMAL(12,2)"),
+        LAST_ORDER_DATE("last_order_date", "TIMESTAMP"),
+        DISTINCT_PRODUCTS("distinct_products", "INTEGER");
+
+        private final String column;
+        private final String type;
+
+        Metric(String column, String type) {
+            this.column = column;
+            this.type = type;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    public static void main(String[] args) {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            int customers = materialize(conn, EnumSet.allOf(Metric.class), 500);
+            System.out.println("Customer analytics materialized for " + customers + " customers.");
+        } catch (SQLException e) {
+            System.err.println("Error materializing customer analytics: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Computes {@code metrics} for every customer with orders and upserts them into
+     * customer_analytics. Columns for metrics not requested are left untouched.
+     *
+     * @return number of customers written
+     */
+    public static int materialize(Connection conn, Set<Metric> metrics, int batchSize) throws SQLException {
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("At least one metric is required");
+        }
+        ensureTable(conn);
+
+        // Declaration order fixes the column and parameter order of the upsert
+        Metric[] selected = EnumSet.copyOf(metrics).toArray(new Metric[0]);
+        String columns = Arrays.stream(selected).map(Metric::column).collect(Collectors.joining(", "));
+        String placeholders = String.join(", ", Collections.nCopies(selected.length + 1, "?"));
+        String updates = Arrays.stream(selected)
+                .map(metric -> metric.column() + " = excluded." + metric.column())
+                .collect(Collectors.joining(", "));
+        String upsertSql = "INSERT INTO customer_analytics (customer_id, " + columns + ", refreshed_at)"
+                + " VALUES (" + placeholders + ", CURRENT_TIMESTAMP)"
+                + " ON CONFLICT(customer_id) DO UPDATE SET " + updates + ", refreshed_at = excluded.refreshed_at";
+
+        String scanSql = """
+                    SELECT o.customer_id, o.product_id, o.quantity, o.order_date, p.price
+                    FROM orders o
+                    LEFT JOIN products p ON p.product_id = o.product_id
+                    ORDER BY o.customer_id, o.product_id
+                """;
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement scan = conn.prepareStatement(scanSql);
+             PreparedStatement upsert = conn.prepareStatement(upsertSql)) {
+            scan.setFetchSize(batchSize);
+
+            Accumulator acc = new Accumulator();
+            int customers = 0;
+            int pending = 0;
+
+            try (ResultSet rs = scan.executeQuery()) {
+                while (rs.next()) {
+                    int customerId = rs.getInt(1);
+                    if (acc.active && customerId != acc.customerId) {
+                        acc.bind(upsert, selected);
+                        upsert.addBatch();
+                        customers++;
+                        if (++pending == batchSize) {
+                            upsert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (!acc.active || customerId != acc.customerId) {
+                        acc.reset(customerId);
+                    }
+                    acc.add(rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getDouble(5));
+                }
+            }
+
+            if (acc.active) {
+                acc.bind(upsert, selected);
+                upsert.addBatch();
+                customers++;
+                pending++;
+            }
+            if (pending > 0) {
+                upsert.executeBatch();
+            }
+
+            conn.commit();
+            return customers;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void ensureTable(Connection conn) throws SQLException {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE IF NOT EXISTS customer_analytics (\n");
+        ddl.append("    customer_id INTEGER PRIMARY KEY,\n");
+        for (Metric metric : Metric.values()) {
+            ddl.append("    ").append(metric.column).append(' ').append(metric.type).append(",\n");
+        }
+        ddl.append("    refreshed_at TIMESTAMP,\n");
+        ddl.append("    FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE\n)");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(ddl.toString());
+        }
+    }
+
+    // Per-customer running totals; reused across customers so the scan doesn't allocate per row
+    private static class Accumulator {
+        boolean active;
+        int customerId;
+        long orders;
+        long quantity;
+        double spend;
+        String lastOrderDate;
+        int distinctProducts;
+        int lastProductId;
+
+        void reset(int customerId) {
+            this.active = true;
+            this.customerId = customerId;
+            this.orders = 0;
+            this.quantity = 0;
+            this.spend = 0;
+            this.lastOrderDate = null;
+            this.distinctProducts = 0;
+            this.lastProductId = Integer.MIN_VALUE;
+        }
+
+        void add(int productId, int quantity, String orderDate, double price) {
+            orders++;
+            this.quantity += quantity;
+            spend += price * quantity;
+            // SQLite timestamps are ISO-8601 text, so string order is time order
+            if (orderDate != null && (lastOrderDate == null || orderDate.compareTo(lastOrderDate) > 0)) {
+                lastOrderDate = orderDate;
+            }
+            // Rows are sorted by product within a customer, so a change means a new product
+            if (productId != lastProductId) {
+                distinctProducts++;
+                lastProductId = productId;
+            }
+        }
+
+        void bind(PreparedStatement pstmt, Metric[] metrics) throws SQLException {
+            pstmt.setInt(1, customerId);
+            for (int i = 0; i < metrics.length; i++) {
+                int param = i + 2;
+                switch (metrics[i]) {
+                    case TOTAL_ORDERS -> pstmt.setLong(param, orders);
+                    case TOTAL_QUANTITY -> pstmt.setLong(param, quantity);
+                    case TOTAL_SPEND -> pstmt.setDouble(param, Math.round(spend * 100) / 100.0);
+                    case AVERAGE_BASKET -> pstmt.setDouble(param, Math.round(spend / orders * 100) / 100.0);
+                    case LAST_ORDER_DATE -> pstmt.setString(param, lastOrderDate);
+                    case DISTINCT_PRODUCTS -> pstmt.setInt(param, distinctProducts);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.interview.util;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CustomerStatsUtil {
     private static final String DB_URL = "jdbc:sqlite:src/main/db/interview.db";
@@ -11,7 +18,13 @@ public class CustomerStatsUtil {
         try (Connection conn = getConnection()) {
             System.out.println("Database connection successful!");
             createCustomerStatsTable();
-            updateCustomerStats();
+            if (args.length > 0 && args[0].equals("delta")) {
+                refreshDelta();
+            } else if (args.length > 0 && args[0].equals("rebuild")) {
+                rebuildCustomerStatsParallel(Runtime.getRuntime().availableProcessors());
+            } else {
+                updateCustomerStats();
+            }
             verifyCustomerStats();
         } catch (SQLException e) {
             System.err.println("Error: " + e.getMessage());
@@ -23,18 +36,8 @@ public class CustomerStatsUtil {
     }
 
     private static void createCustomerStatsTable() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            // Create customer_stats table if it doesn't exist
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS customer_stats (
-                            customer_id INTEGER PRIMARY KEY,
-                            total_orders INTEGER DEFAULT 0,
-                            FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE
-                        )
-                    """);
-
+        try (Connection conn = getConnection()) {
+            ensureCustomerStatsTable(conn);
             System.out.println("customer_stats table ensured to exist.");
 
         } catch (SQLException e) {
@@ -43,19 +46,60 @@ public class CustomerStatsUtil {
         }
     }
 
-    public static void updateCustomerStats() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+    public static void ensureCustomerStatsTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Create customer_stats table if it doesn't exist
+            stmt.execute(customerStatsDdl("customer_stats"));
+        }
 
-            // Update total_orders based on orders count
-            stmt.execute("""
-                        INSERT INTO customer_stats (customer_id, total_orders)
-                        SELECT c.customer_id, COUNT(o.order_id)
-                        FROM customers c
-                        LEFT JOIN orders o ON c.customer_id = o.customer_id
-                        ON CONFLICT(customer_id) DO UPDATE 
-                        SET total_orders = excluded.total_orders
-                    """);
+        // Older databases only have total_orders
+        addColumnIfMissing(conn, "total_quantity", "INTEGER DEFAULT 0");
+        addColumnIfMissing(conn, "last_order_date", "TIMESTAMP");
+    }
+
+    // Shared by the live table and the shadow table used for rebuilds
+    private static String customerStatsDdl(String tableName) {
+        return """
+                    CREATE TABLE IF NOT EXISTS %s (
+                        customer_id INTEGER PRIMARY KEY,
+                        total_orders INTEGER DEFAULT 0,
+                        total_quantity INTEGER DEFAULT 0,
+                        last_order_date TIMESTAMP,
+                        FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE
+                    )
+                """.formatted(tableName);
+    }
+
+    private static void addColumnIfMissing(Connection conn, String column, String definition)
+            throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(customer_stats)")) {
+                while (rs.next()) {
+                    if (column.equals(rs.getString("name"))) {
+                        return;
+                    }
+                }
+            }
+            stmt.execute("ALTER TABLE customer_stats ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    /*
+     * Full recompute from the orders table. The order path keeps customer_stats current through
+     * refreshDelta, so this is only needed for reconciliation (backfills, repairs, drift checks).
+     * The watermark moves to the last order seen, so later delta refreshes continue from here.
+     */
+    public static void updateCustomerStats() {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                ensureWatermarkTable(conn);
+                recomputeAll(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
 
             System.out.println("Customer stats updated successfully.");
 
@@ -65,6 +109,258 @@ public class CustomerStatsUtil {
         }
     }
 
+    // Recomputes every customer's counters up to MAX(order_id) and moves the watermark there
+    private static int recomputeAll(Connection conn) throws SQLException {
+        long lastOrderId = maxOrderId(conn);
+
+        int touched;
+        // Recompute every counter based on the orders table
+        try (PreparedStatement pstmt = conn.prepareStatement("""
+                    INSERT INTO customer_stats (customer_id, total_orders, total_quantity, last_order_date)
+                    SELECT c.customer_id, COUNT(o.order_id), COALESCE(SUM(o.quantity), 0), MAX(o.order_date)
+                    FROM customers c
+                    LEFT JOIN orders o ON c.customer_id = o.customer_id AND o.order_id <= ?
+                    GROUP BY c.customer_id
+                    ON CONFLICT(customer_id) DO UPDATE 
+                    SET total_orders = excluded.total_orders,
+                        total_quantity = excluded.total_quantity,
+                        last_order_date = excluded.last_order_date
+                """)) {
+            pstmt.setLong(1, lastOrderId);
+            touched = pstmt.executeUpdate();
+        }
+
+        setWatermark(conn, lastOrderId);
+        return touched;
+    }
+
+    /*
+     * Delta refresh: aggregates only orders above the stored watermark and adds them to
+     * customer_stats, so the cost scales with new orders rather than with history.
+     * Runs in the caller's transaction. Relies on order_id growing with commit order,
+     * which holds because SQLite has a single writer.
+     *
+     * Orders must be append-only: an order updated or deleted below the watermark is never
+     * revisited, and the stats drift until the next full recompute. Anything that rewrites
+     * existing orders has to delete the watermark row, which makes the next refresh a full one.
+     * Without a watermark row the existing stats have unknown coverage (e.g. they were
+     * maintained by the order path before the watermark existed), so they are recomputed
+     * rather than added to.
+     *
+     * Returns the number of customers whose stats changed.
+     */
+    public static int refreshDelta(Connection conn) throws SQLException {
+        ensureWatermarkTable(conn);
+
+        long watermark = -1;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT last_order_id FROM stats_watermarks WHERE name = 'customer_stats'")) {
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    watermark = rs.getLong("last_order_id");
+                }
+            }
+        }
+        if (watermark < 0) {
+            return recomputeAll(conn);
+        }
+
+        long lastOrderId = maxOrderId(conn);
+        if (lastOrderId <= watermark) {
+            return 0;
+        }
+
+        int touched;
+        try (PreparedStatement pstmt = conn.prepareStatement("""
+                    INSERT INTO customer_stats (customer_id, total_orders, total_quantity, last_order_date)
+                    SELECT customer_id, COUNT(*), SUM(quantity), MAX(order_date)
+                    FROM orders
+                    WHERE order_id > ? AND order_id <= ?
+                    GROUP BY customer_id
+                    ON CONFLICT(customer_id) DO UPDATE
+                    SET total_orders = total_orders + excluded.total_orders,
+                        total_quantity = total_quantity + excluded.total_quantity,
+                        last_order_date = CASE
+                            WHEN last_order_date IS NULL OR excluded.last_order_date > last_order_date
+                            THEN excluded.last_order_date ELSE last_order_date END
+                """)) {
+            pstmt.setLong(1, watermark);
+            pstmt.setLong(2, lastOrderId);
+            touched = pstmt.executeUpdate();
+        }
+
+        setWatermark(conn, lastOrderId);
+        return touched;
+    }
+
+    /*
+     * Parallel full rebuild. customer_id is split into ranges that are aggregated concurrently,
+     * each on its own read connection, while this thread writes finished ranges into a shadow
+     * table. The shadow table replaces customer_stats in one transaction, so readers see either
+     * the old stats or the complete new ones. All ranges are bounded by the same MAX(order_id)
+     * snapshot, and the watermark is set to it so delta refreshes pick up later orders.
+     *
+     * Concurrent readers don't block the writer in WAL mode; with a rollback journal they
+     * hold off writers while they scan.
+     */
+    public static void rebuildCustomerStatsParallel(int partitions) {
+        rebuildCustomerStatsParallel(CustomerStatsUtil::getConnection, partitions);
+    }
+
+    // Every connection, the writer's and each range's, comes from connections
+    static void rebuildCustomerStatsParallel(TransactionTemplate.ConnectionSource connections, int partitions) {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(partitions, Runtime.getRuntime().availableProcessors())));
+
+        try (Connection conn = connections.getConnection()) {
+            ensureCustomerStatsTable(conn);
+            ensureWatermarkTable(conn);
+
+            long lastOrderId = maxOrderId(conn);
+            long minCustomerId;
+            long maxCustomerId;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MIN(customer_id), MAX(customer_id) FROM customers")) {
+                rs.next();
+                minCustomerId = rs.getLong(1);
+                maxCustomerId = rs.getLong(2);
+            }
+
+            // Aggregate each customer_id range on its own connection
+            CompletionService<List<Object[]>> completion = new ExecutorCompletionService<>(executor);
+            long span = Math.max(1, (maxCustomerId - minCustomerId + partitions) / partitions);
+            int submitted = 0;
+            for (long from = minCustomerId; from <= maxCustomerId; from += span) {
+                long to = Math.min(maxCustomerId, from + span - 1);
+                long rangeFrom = from;
+                completion.submit(() -> aggregateRange(connections, rangeFrom, to, lastOrderId));
+                submitted++;
+            }
+
+            // Write ranges into the shadow table as they finish
+            String insertSql = """
+                        INSERT INTO customer_stats_shadow (customer_id, total_orders, total_quantity, last_order_date)
+                        VALUES (?, ?, ?, ?)
+                    """;
+            conn.setAutoCommit(false);
+            try {
+                // Created in the swap transaction, so a failed rebuild rolls the shadow table back too.
+                // Dropped first in case an earlier, crashed rebuild left one behind.
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DROP TABLE IF EXISTS customer_stats_shadow");
+                    stmt.execute(customerStatsDdl("customer_stats_shadow"));
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    for (int i = 0; i < submitted; i++) {
+                        for (Object[] row : completion.take().get()) {
+                            for (int col = 0; col < row.length; col++) {
+                                pstmt.setObject(col + 1, row[col]);
+                            }
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+
+                    // Atomic swap
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("DROP TABLE customer_stats");
+                        stmt.execute("ALTER TABLE customer_stats_shadow RENAME TO customer_stats");
+                    }
+                    setWatermark(conn, lastOrderId);
+                    conn.commit();
+                }
+            } catch (SQLException | InterruptedException | ExecutionException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            System.out.printf("Customer stats rebuilt from %d partitions.%n", submitted);
+
+        } catch (SQLException | ExecutionException e) {
+            System.err.println("Error rebuilding customer stats: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Customer stats rebuild interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Object[]> aggregateRange(TransactionTemplate.ConnectionSource connections,
+                                                 long fromCustomerId, long toCustomerId, long lastOrderId)
+            throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        String sql = """
+                    SELECT c.customer_id, COUNT(o.order_id), COALESCE(SUM(o.quantity), 0), MAX(o.order_date)
+                    FROM customers c
+                    LEFT JOIN orders o ON c.customer_id = o.customer_id AND o.order_id <= ?
+                    WHERE c.customer_id BETWEEN ? AND ?
+                    GROUP BY c.customer_id
+                """;
+        try (Connection conn = connections.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, lastOrderId);
+            pstmt.setLong(2, fromCustomerId);
+            pstmt.setLong(3, toCustomerId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Object[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getObject(4)});
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Standalone delta refresh in its own transaction
+    public static void refreshDelta() {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int touched = refreshDelta(conn);
+                conn.commit();
+                System.out.println("Customer stats delta applied to " + touched + " customers.");
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error refreshing customer stats: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void ensureWatermarkTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS stats_watermarks (
+                            name TEXT PRIMARY KEY,
+                            last_order_id INTEGER NOT NULL
+                        )
+                    """);
+        }
+    }
+
+    private static void setWatermark(Connection conn, long lastOrderId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("""
+                    INSERT INTO stats_watermarks (name, last_order_id) VALUES ('customer_stats', ?)
+                    ON CONFLICT(name) DO UPDATE SET last_order_id = excluded.last_order_id
+                """)) {
+            pstmt.setLong(1, lastOrderId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static long maxOrderId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(order_id), 0) FROM orders")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
     private static void verifyCustomerStats() {
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
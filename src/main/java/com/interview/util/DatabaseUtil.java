@@ -74,11 +74,14 @@ public class DatabaseUtil {
                             product_id INTEGER,
                             quantity INTEGER NOT NULL,
                             order_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            idempotency_key TEXT,
                             FOREIGN KEY (customer_id) REFERENCES customers(customer_id),
                             FOREIGN KEY (product_id) REFERENCES products(product_id)
                         )
                     """);
 
+            ensureOrderIdempotencyKey(conn);
+
             System.out.println("Inserting sample data...");
             // Insert sample data
             stmt.execute("""
@@ -110,6 +113,25 @@ public class DatabaseUtil {
         }
     }
 
+    // Adds orders.idempotency_key and its unique index to databases created before it existed
+    public static void ensureOrderIdempotencyKey(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            boolean hasColumn = false;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(orders)")) {
+                while (rs.next()) {
+                    hasColumn |= "idempotency_key".equals(rs.getString("name"));
+                }
+            }
+            if (!hasColumn) {
+                stmt.execute("ALTER TABLE orders ADD COLUMN idempotency_key TEXT");
+            }
+            stmt.execute("""
+                        CREATE UNIQUE INDEX IF NOT EXISTS idx_orders_idempotency_key
+                        ON orders (idempotency_key) WHERE idempotency_key IS NOT NULL
+                    """);
+        }
+    }
+
     private static void verifyDatabaseSetup() {
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
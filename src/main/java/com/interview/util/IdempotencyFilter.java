@@ -0,0 +1,66 @@
+package com.interview.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory filter for idempotency keys, consulted before a request touches SQLite.
+ *
+ * A small LRU cache of recently seen keys answers "definitely a duplicate"; a Bloom filter
+ * answers "definitely new". Anything else is UNKNOWN and must be settled by the database
+ * (a unique index on the key). The Bloom filter is kept in two generations that rotate once
+ * the current one is full, so memory stays bounded and the false-positive rate doesn't creep up.
+ */
+public class IdempotencyFilter {
+    public enum Check {
+        // Never seen by this filter: safe to process without a pre-check
+        NEW,
+        // Seen recently: reject without touching the database
+        DUPLICATE,
+        // Possibly seen: let the database's unique index decide
+        UNKNOWN
+    }
+
+    private final long generationCapacity;
+    private final Map<String, Boolean> recentKeys;
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long currentCount;
+
+    /**
+     * @param generationCapacity keys per Bloom generation; two generations are kept
+     * @param recentCapacity     keys kept in the exact recent-key cache
+     */
+    public IdempotencyFilter(long generationCapacity, int recentCapacity) {
+        this.generationCapacity = generationCapacity;
+        this.current = new BloomFilter(generationCapacity, 0.01);
+        this.recentKeys = new LinkedHashMap<>(recentCapacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+    }
+
+    public synchronized Check check(String key) {
+        if (recentKeys.containsKey(key)) {
+            return Check.DUPLICATE;
+        }
+        if (current.mightContain(key) || (previous != null && previous.mightContain(key))) {
+            return Check.UNKNOWN;
+        }
+        return Check.NEW;
+    }
+
+    // Called once a key is known to be used: processed successfully or rejected by the unique index
+    public synchronized void record(String key) {
+        recentKeys.put(key, Boolean.TRUE);
+        if (currentCount >= generationCapacity) {
+            previous = current;
+            current = new BloomFilter(generationCapacity, 0.01);
+            currentCount = 0;
+        }
+        current.add(key);
+        currentCount++;
+    }
+}
@@ -0,0 +1,323 @@
+package com.interview.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Ingest throughput benchmark for the Q03 batch path.
+ *
+ * Every scenario loads the same synthetic products and orders into a fresh SQLite file
+ * and reports rows/sec, p99 commit-unit latency and allocation rate. Results are written
+ * as JSON so runs from different versions can be diffed.
+ *
+ * Usage: IngestBenchmark [rows] [output.json] [label]
+ */
+public class IngestBenchmark {
+    // Autocommit pays one fsync per row, so it gets a smaller row count to keep runs short
+    private static final int AUTOCOMMIT_ROW_CAP = 2_000;
+    // products/orders have 3 bound columns, 300 rows keeps a statement under 999 parameters
+    private static final int MULTI_ROW_VALUES = 300;
+
+    enum Mode {
+        AUTOCOMMIT, ADD_BATCH, MULTI_ROW_VALUES
+    }
+
+    record Scenario(Mode mode, int batchSize, String journalMode, String synchronous) {
+        String name() {
+            String base = switch (mode) {
+                case AUTOCOMMIT -> "autocommit";
+                case ADD_BATCH -> "addBatch-" + batchSize;
+                case MULTI_ROW_VALUES -> "multiRow-" + batchSize;
+            };
+            return base + "/" + journalMode.toLowerCase(Locale.ROOT) + "/" + synchronous.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    record Result(Scenario scenario, int rows, long elapsedNanos, long p50Nanos, long p99Nanos,
+                  long maxNanos, long allocatedBytes) {
+        double rowsPerSecond() {
+            return rows / (elapsedNanos / 1e9);
+        }
+
+        double allocatedMbPerSecond() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+        }
+
+        double allocatedBytesPerRow() {
+            return allocatedBytes < 0 ? -1 : (double) allocatedBytes / rows;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Path output = Paths.get(args.length > 1 ? args[1] : "target/ingest-benchmark.json");
+        String label = args.length > 2 ? args[2] : "local";
+        // Orders pick a random product, so every scenario needs at least one of each
+        if (rows < 2) {
+            throw new IllegalArgumentException("rows must be at least 2, got " + rows);
+        }
+
+        List<Scenario> scenarios = defaultScenarios();
+        Path workDir = Files.createTempDirectory("ingest-bench");
+
+        List<Result> results = new ArrayList<>();
+        try {
+            // Warm up JIT and the driver before measuring
+            run(new Scenario(Mode.ADD_BATCH, 1_000, "WAL", "OFF"), 5_000, workDir);
+
+            for (Scenario scenario : scenarios) {
+                int scenarioRows = scenario.mode() == Mode.AUTOCOMMIT ? Math.min(rows, AUTOCOMMIT_ROW_CAP) : rows;
+                Result result = run(scenario, scenarioRows, workDir);
+                results.add(result);
+                System.out.printf("%-32s %8d rows %12.0f rows/s  p99 %8.3f ms  alloc %8.1f MB/s%n",
+                        scenario.name(), result.rows(), result.rowsPerSecond(),
+                        result.p99Nanos() / 1e6, result.allocatedMbPerSecond());
+            }
+        } finally {
+            // run() removes each database, leaving only the directory
+            Files.deleteIfExists(workDir);
+        }
+
+        writeJson(output, label, results);
+        System.out.println("\nResults written to " + output.toAbsolutePath());
+    }
+
+    static List<Scenario> defaultScenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String journal : List.of("DELETE", "WAL")) {
+            for (String sync : List.of("FULL", "NORMAL", "OFF")) {
+                scenarios.add(new Scenario(Mode.AUTOCOMMIT, 1, journal, sync));
+                for (int batchSize : new int[]{100, 1_000, 10_000}) {
+                    scenarios.add(new Scenario(Mode.ADD_BATCH, batchSize, journal, sync));
+                }
+                scenarios.add(new Scenario(Mode.MULTI_ROW_VALUES, 1_000, journal, sync));
+            }
+        }
+        return scenarios;
+    }
+
+    static Result run(Scenario scenario, int rows, Path workDir) throws SQLException, IOException {
+        Path dbFile = workDir.resolve(scenario.name().replace('/', '_') + ".db");
+        deleteDatabase(dbFile);
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+            createSchema(conn, scenario);
+
+            // Half the rows are products, half orders referencing them
+            int productRows = rows / 2;
+            int orderRows = rows - productRows;
+            Random random = new Random(42);
+            List<Long> latencies = new ArrayList<>();
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            load(conn, scenario, productRows, latencies, "products", "name, price, stock",
+                    (pstmt, offset, i) -> {
+                        pstmt.setString(offset, "Product " + i);
+                        pstmt.setDouble(offset + 1, 1 + random.nextInt(10_000) / 100.0);
+                        pstmt.setInt(offset + 2, random.nextInt(500));
+                    });
+            load(conn, scenario, orderRows, latencies, "orders", "customer_id, product_id, quantity",
+                    (pstmt, offset, i) -> {
+                        pstmt.setInt(offset, 1 + random.nextInt(100));
+                        pstmt.setInt(offset + 1, 1 + random.nextInt(productRows));
+                        pstmt.setInt(offset + 2, 1 + random.nextInt(5));
+                    });
+
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            return new Result(scenario, rows, elapsed, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1],
+                    allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+        } finally {
+            deleteDatabase(dbFile);
+        }
+    }
+
+    @FunctionalInterface
+    interface RowBinder {
+        void bind(PreparedStatement pstmt, int firstParam, int rowIndex) throws SQLException;
+    }
+
+    // Loads rows in commit units of scenario.batchSize, recording the latency of each unit
+    private static void load(Connection conn, Scenario scenario, int rows, List<Long> latencies,
+                             String table, String columns, RowBinder binder) throws SQLException {
+        String singleRowSql = "INSERT INTO " + table + " (" + columns + ") VALUES (?, ?, ?)";
+
+        switch (scenario.mode()) {
+            case AUTOCOMMIT -> {
+                conn.setAutoCommit(true);
+                try (PreparedStatement pstmt = conn.prepareStatement(singleRowSql)) {
+                    for (int i = 0; i < rows; i++) {
+                        long t0 = System.nanoTime();
+                        binder.bind(pstmt, 1, i);
+                        pstmt.executeUpdate();
+                        latencies.add(System.nanoTime() - t0);
+                    }
+                }
+            }
+            case ADD_BATCH -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(singleRowSql)) {
+                    for (int from = 0; from < rows; from += scenario.batchSize()) {
+                        int to = Math.min(from + scenario.batchSize(), rows);
+                        long t0 = System.nanoTime();
+                        for (int i = from; i < to; i++) {
+                            binder.bind(pstmt, 1, i);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                        conn.commit();
+                        latencies.add(System.nanoTime() - t0);
+                    }
+                }
+                conn.setAutoCommit(true);
+            }
+            case MULTI_ROW_VALUES -> {
+                conn.setAutoCommit(false);
+                String fullSql = multiRowSql(table, columns, MULTI_ROW_VALUES);
+                try (PreparedStatement full = conn.prepareStatement(fullSql)) {
+                    for (int from = 0; from < rows; from += scenario.batchSize()) {
+                        int to = Math.min(from + scenario.batchSize(), rows);
+                        long t0 = System.nanoTime();
+                        for (int chunk = from; chunk < to; chunk += MULTI_ROW_VALUES) {
+                            int chunkRows = Math.min(MULTI_ROW_VALUES, to - chunk);
+                            if (chunkRows == MULTI_ROW_VALUES) {
+                                bindRows(full, binder, chunk, chunkRows);
+                                full.executeUpdate();
+                            } else {
+                                try (PreparedStatement tail = conn.prepareStatement(multiRowSql(table, columns, chunkRows))) {
+                                    bindRows(tail, binder, chunk, chunkRows);
+                                    tail.executeUpdate();
+                                }
+                            }
+                        }
+                        conn.commit();
+                        latencies.add(System.nanoTime() - t0);
+                    }
+                }
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindRows(PreparedStatement pstmt, RowBinder binder, int firstRow, int rowCount)
+            throws SQLException {
+        for (int r = 0; r < rowCount; r++) {
+            binder.bind(pstmt, r * 3 + 1, firstRow + r);
+        }
+    }
+
+    private static String multiRowSql(String table, String columns, int rows) {
+        return "INSERT INTO " + table + " (" + columns + ") VALUES "
+                + String.join(", ", Collections.nCopies(rows, "(?, ?, ?)"));
+    }
+
+    private static void createSchema(Connection conn, Scenario scenario) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = " + scenario.journalMode());
+            stmt.execute("PRAGMA synchronous = " + scenario.synchronous());
+
+            // Same shape as DatabaseUtil.initializeDatabase
+            stmt.execute("""
+                        CREATE TABLE customers (
+                            customer_id INTEGER PRIMARY KEY,
+                            name TEXT NOT NULL,
+                            email TEXT UNIQUE,
+                            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE products (
+                            product_id INTEGER PRIMARY KEY,
+                            name TEXT NOT NULL,
+                            price DECIMAL(10,2) NOT NULL,
+                            stock INTEGER DEFAULT 0
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE orders (
+                            order_id INTEGER PRIMARY KEY,
+                            customer_id INTEGER,
+                            product_id INTEGER,
+                            quantity INTEGER NOT NULL,
+                            order_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            FOREIGN KEY (customer_id) REFERENCES customers(customer_id),
+                            FOREIGN KEY (product_id) REFERENCES products(product_id)
+                        )
+                    """);
+            stmt.execute("""
+                        WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 100)
+                        INSERT INTO customers (customer_id, name, email)
+                        SELECT n, 'Customer ' || n, 'customer' || n || '@example.com' FROM seq
+                    """);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    // Bytes allocated by this thread so far, or -1 when the JVM doesn't expose it
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void deleteDatabase(Path dbFile) throws IOException {
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            Files.deleteIfExists(Paths.get(dbFile + suffix));
+        }
+    }
+
+    private static void writeJson(Path output, String label, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"label\": \"").append(label.replace("\"", "\\\"")).append("\",\n");
+        json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"results\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            json.append(String.format(Locale.ROOT,
+                    "    {\"scenario\": \"%s\", \"mode\": \"%s\", \"batchSize\": %d, \"journalMode\": \"%s\", "
+                            + "\"synchronous\": \"%s\", \"rows\": %d, \"elapsedMs\": %.3f, \"rowsPerSec\": %.1f, "
+                            + "\"p50BatchMs\": %.3f, \"p99BatchMs\": %.3f, \"maxBatchMs\": %.3f, "
+                            + "\"allocMbPerSec\": %.2f, \"allocBytesPerRow\": %.1f}",
+                    r.scenario().name(), r.scenario().mode(), r.scenario().batchSize(),
+                    r.scenario().journalMode(), r.scenario().synchronous(), r.rows(),
+                    r.elapsedNanos() / 1e6, r.rowsPerSecond(), r.p50Nanos() / 1e6, r.p99Nanos() / 1e6,
+                    r.maxNanos() / 1e6, r.allocatedMbPerSecond(), r.allocatedBytesPerRow()));
+            json.append(i < results.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("  ]\n}\n");
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Files.writeString(output, json.toString());
+    }
+}
@@ -0,0 +1,66 @@
+package com.interview.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters, queryable in-process.
+ *
+ * Callers look up their histogram or counter once, keep it in a field, and record on the hot
+ * path with no map lookups. {@link #snapshot} captures everything at once. Subtracting an
+ * earlier snapshot gives per-interval counts and percentiles without resetting anything,
+ * so several readers can each track their own intervals.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    // Shared by the services, so one snapshot covers the whole process
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> histogramSnapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramSnapshots.put(name, histogram.snapshot()));
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        return new Snapshot(System.nanoTime(), histogramSnapshots, counterValues);
+    }
+
+    public record Snapshot(long takenAtNanos, Map<String, LatencyHistogram.Snapshot> histograms,
+                           Map<String, Long> counters) {
+
+        // Metrics created after earlier was taken count from zero
+        public Snapshot minus(Snapshot earlier) {
+            Map<String, LatencyHistogram.Snapshot> histogramDiffs = new TreeMap<>();
+            histograms.forEach((name, snapshot) -> {
+                LatencyHistogram.Snapshot before = earlier.histograms().get(name);
+                histogramDiffs.put(name, before == null ? snapshot : snapshot.minus(before));
+            });
+            Map<String, Long> counterDiffs = new TreeMap<>();
+            counters.forEach((name, value) -> counterDiffs.put(name, value - earlier.counters().getOrDefault(name, 0L)));
+            return new Snapshot(takenAtNanos, histogramDiffs, counterDiffs);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            histograms.forEach((name, snapshot) -> report.append(name).append(": ").append(snapshot).append('\n'));
+            counters.forEach((name, value) -> report.append(name).append(": ").append(value).append('\n'));
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.interview.util;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transactional outbox for orders.
+ *
+ * The order transaction only appends a compact event row to order_outbox. Side work
+ * (customer_stats, rollups, notifications) is done by consumers that a background
+ * {@link Dispatcher} drives in batches. Each consumer's position is stored in outbox_offsets
+ * and advanced in the same transaction as the consumer's own writes, so database-side
+ * consumers see every event exactly once. Events all consumers have processed are pruned
+ * after each dispatch pass.
+ */
+public class OrderOutbox {
+    private static final Logger logger = Logger.getLogger(OrderOutbox.class.getName());
+
+    public static final String ORDER_PLACED = "ORDER_PLACED";
+
+    public record OrderEvent(long eventId, String eventType, long orderId, int customerId,
+                             int productId, int quantity) {
+    }
+
+    public interface Consumer {
+        String name();
+
+        // One-time setup such as schema checks, run in its own transaction before the first batch
+        default void prepare(Connection conn) throws SQLException {
+        }
+
+        // Runs inside the dispatcher's transaction; throw to leave the batch for the next round
+        void consume(Connection conn, List<OrderEvent> events) throws SQLException;
+    }
+
+    public static void ensureTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS order_outbox (
+                            event_id INTEGER PRIMARY KEY,
+                            event_type TEXT NOT NULL,
+                            order_id INTEGER NOT NULL,
+                            customer_id INTEGER NOT NULL,
+                            product_id INTEGER NOT NULL,
+                            quantity INTEGER NOT NULL,
+                            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS outbox_offsets (
+                            consumer TEXT PRIMARY KEY,
+                            last_event_id INTEGER NOT NULL
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS product_sales (
+                            product_id INTEGER PRIMARY KEY,
+                            order_count INTEGER NOT NULL DEFAULT 0,
+                            units_sold INTEGER NOT NULL DEFAULT 0
+                        )
+                    """);
+        }
+    }
+
+    public static void append(Connection conn, String eventType, long orderId, int customerId,
+                              int productId, int quantity) throws SQLException {
+        String sql = """
+                    INSERT INTO order_outbox (event_type, order_id, customer_id, product_id, quantity)
+                    VALUES (?, ?, ?, ?, ?)
+                """;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, eventType);
+            pstmt.setLong(2, orderId);
+            pstmt.setInt(3, customerId);
+            pstmt.setInt(4, productId);
+            pstmt.setInt(5, quantity);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Appends one event per order row above afterOrderId, e.g. all lines a basket just inserted
+    public static void appendOrdersAfter(Connection conn, String eventType, long afterOrderId) throws SQLException {
+        String sql = """
+                    INSERT INTO order_outbox (event_type, order_id, customer_id, product_id, quantity)
+                    SELECT ?, order_id, customer_id, product_id, quantity
+                    FROM orders
+                    WHERE order_id > ?
+                    ORDER BY order_id
+                """;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, eventType);
+            pstmt.setLong(2, afterOrderId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads outbox rows in batches and hands them to each consumer in turn. Consumers advance
+     * independently, so a failing consumer is retried without holding the others back.
+     */
+    public static class Dispatcher implements AutoCloseable {
+        private final List<Consumer> consumers;
+        private final int batchSize;
+        private final TransactionTemplate transactions;
+        // Consumers whose prepare has committed; guarded by runOnce's lock
+        private final Set<String> prepared = new HashSet<>();
+        private ScheduledExecutorService scheduler;
+
+        public Dispatcher(List<Consumer> consumers, int batchSize) {
+            this(consumers, batchSize, new TransactionTemplate());
+        }
+
+        public Dispatcher(List<Consumer> consumers, int batchSize, TransactionTemplate transactions) {
+            this.consumers = List.copyOf(consumers);
+            this.batchSize = batchSize;
+            this.transactions = transactions;
+        }
+
+        public void start(long interval, TimeUnit unit) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "order-outbox-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::runOnceQuietly, 0, interval, unit);
+        }
+
+        private void runOnceQuietly() {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Outbox dispatch failed", e);
+            }
+        }
+
+        /**
+         * Drains the outbox for every consumer.
+         *
+         * @return number of events delivered, summed over consumers
+         */
+        public synchronized int runOnce() {
+            int delivered = 0;
+            for (Consumer consumer : consumers) {
+                try {
+                    if (!prepared.contains(consumer.name())) {
+                        transactions.execute("outbox:prepare:" + consumer.name(), conn -> {
+                            consumer.prepare(conn);
+                            return null;
+                        });
+                        prepared.add(consumer.name());
+                    }
+                    int batch;
+                    do {
+                        batch = transactions.execute("outbox:" + consumer.name(), conn -> dispatchBatch(conn, consumer));
+                        delivered += batch;
+                    } while (batch == batchSize);
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Outbox consumer " + consumer.name() + " failed, will retry", e);
+                }
+            }
+            if (delivered > 0) {
+                try {
+                    transactions.execute("outbox:prune", this::prune);
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Outbox prune failed, will retry", e);
+                }
+            }
+            return delivered;
+        }
+
+        /*
+         * Deletes events every consumer has processed, so the outbox stays as small as the
+         * slowest consumer's backlog. Nothing is pruned until each consumer has an offset.
+         * The newest event is always kept: event_id is a plain rowid, and SQLite would hand out
+         * ids from 1 again in an empty table, below every consumer's offset.
+         */
+        private int prune(Connection conn) throws SQLException {
+            String placeholders = String.join(", ", Collections.nCopies(consumers.size(), "?"));
+            long processedByAll;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT COUNT(*), MIN(last_event_id) FROM outbox_offsets WHERE consumer IN (" + placeholders + ")")) {
+                for (int i = 0; i < consumers.size(); i++) {
+                    pstmt.setString(i + 1, consumers.get(i).name());
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) < consumers.size()) {
+                        return 0;
+                    }
+                    processedByAll = rs.getLong(2);
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "DELETE FROM order_outbox WHERE event_id <= ? AND event_id < (SELECT MAX(event_id) FROM order_outbox)")) {
+                pstmt.setLong(1, processedByAll);
+                return pstmt.executeUpdate();
+            }
+        }
+
+        private int dispatchBatch(Connection conn, Consumer consumer) throws SQLException {
+            long position = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT last_event_id FROM outbox_offsets WHERE consumer = ?")) {
+                pstmt.setString(1, consumer.name());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        position = rs.getLong("last_event_id");
+                    }
+                }
+            }
+
+            List<OrderEvent> events = new ArrayList<>(batchSize);
+            String sql = """
+                        SELECT event_id, event_type, order_id, customer_id, product_id, quantity
+                        FROM order_outbox
+                        WHERE event_id > ?
+                        ORDER BY event_id
+                        LIMIT ?
+                    """;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setLong(1, position);
+                pstmt.setInt(2, batchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        events.add(new OrderEvent(rs.getLong("event_id"), rs.getString("event_type"),
+                                rs.getLong("order_id"), rs.getInt("customer_id"),
+                                rs.getInt("product_id"), rs.getInt("quantity")));
+                    }
+                }
+            }
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            consumer.consume(conn, events);
+
+            try (PreparedStatement pstmt = conn.prepareStatement("""
+                        INSERT INTO outbox_offsets (consumer, last_event_id) VALUES (?, ?)
+                        ON CONFLICT(consumer) DO UPDATE SET last_event_id = excluded.last_event_id
+                    """)) {
+                pstmt.setString(1, consumer.name());
+                pstmt.setLong(2, events.get(events.size() - 1).eventId());
+                pstmt.executeUpdate();
+            }
+            return events.size();
+        }
+
+        @Override
+        public void close() {
+            if (scheduler != null) {
+                scheduler.shutdown();
+                try {
+                    scheduler.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // Keeps customer_stats current; the events only signal that new orders exist
+    public static class CustomerStatsConsumer implements Consumer {
+        @Override
+        public String name() {
+            return "customer_stats";
+        }
+
+        // Older databases lack total_quantity/last_order_date; don't rely on the caller's setup
+        @Override
+        public void prepare(Connection conn) throws SQLException {
+            CustomerStatsUtil.ensureCustomerStatsTable(conn);
+        }
+
+        @Override
+        public void consume(Connection conn, List<OrderEvent> events) throws SQLException {
+            // The watermark, not the event list, decides which orders are counted, so this
+            // stays correct alongside full recomputes and other delta refreshes
+            CustomerStatsUtil.refreshDelta(conn);
+        }
+    }
+
+    // Per-product sales rollup
+    public static class ProductSalesRollupConsumer implements Consumer {
+        @Override
+        public String name() {
+            return "product_sales";
+        }
+
+        @Override
+        public void consume(Connection conn, List<OrderEvent> events) throws SQLException {
+            String sql = """
+                        INSERT INTO product_sales (product_id, order_count, units_sold) VALUES (?, 1, ?)
+                        ON CONFLICT(product_id) DO UPDATE
+                        SET order_count = order_count + 1,
+                            units_sold = units_sold + excluded.units_sold
+                    """;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (OrderEvent event : events) {
+                    if (ORDER_PLACED.equals(event.eventType())) {
+                        pstmt.setInt(1, event.productId());
+                        pstmt.setInt(2, event.quantity());
+                        pstmt.addBatch();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /*
+     * Order confirmations. Sending happens outside the database, so a crash after sending but
+     * before the offset commits can repeat a notification (at-least-once).
+     */
+    public static class NotificationConsumer implements Consumer {
+        @Override
+        public String name() {
+            return "notifications";
+        }
+
+        @Override
+        public void consume(Connection conn, List<OrderEvent> events) {
+            for (OrderEvent event : events) {
+                logger.info(String.format("Notify customer %d: order %d for %d x product %d confirmed",
+                        event.customerId(), event.orderId(), event.quantity(), event.productId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.interview.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-key token buckets, e.g. one per username or per caller.
+ *
+ * Each bucket is a single AtomicLong holding its theoretical arrival time (the GCRA form of a
+ * token bucket): a request is allowed if pushing that time forward by one emission interval
+ * keeps it within the burst window of now. Refill is implied by the clock, so there is no
+ * timer per key, and a check is a map lookup plus a CAS with no allocation once the key
+ * exists.
+ *
+ * Buckets that have fully refilled carry no state, so {@link #evictIdle} removes them.
+ * A request racing with eviction may update a bucket that was just removed. That gains it
+ * at most one extra permit, which is the same as starting from a full bucket.
+ */
+public class RateLimiter implements AutoCloseable {
+    private final long emissionIntervalNanos;
+    private final long burstWindowNanos;
+    // nanoTime can be negative; measuring from here keeps 0 as "bucket full"
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private ScheduledExecutorService evictor;
+
+    /**
+     * @param permitsPerSecond sustained rate per key
+     * @param burst            permits a key may use at once after being idle
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstWindowNanos = emissionIntervalNanos * burst;
+    }
+
+    public boolean tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong());
+        }
+
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + emissionIntervalNanos;
+            if (next - now > burstWindowNanos) {
+                denied.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                allowed.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes buckets that have fully refilled.
+     *
+     * @return number of buckets removed
+     */
+    public int evictIdle() {
+        long now = System.nanoTime() - origin;
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            if (entry.getValue().get() <= now && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // Idempotent, so limiters shared between components can each ask for eviction
+    public synchronized void startEviction(long interval, TimeUnit unit) {
+        if (evictor != null) {
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limiter-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, unit);
+    }
+
+    public int trackedKeys() {
+        return buckets.size();
+    }
+
+    public long allowed() {
+        return allowed.sum();
+    }
+
+    public long denied() {
+        return denied.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (evictor != null) {
+            evictor.shutdown();
+        }
+    }
+}
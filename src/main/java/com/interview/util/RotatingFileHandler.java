@@ -0,0 +1,200 @@
+package com.interview.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File handler that rolls the log over by size and by time, and gzips the rolled segments in
+ * the background.
+ *
+ * Rolling over is a rename and a reopen, done inline under the handler's lock. Compression and
+ * retention run on a single low-priority thread, so a large segment never stalls logging.
+ * Segments are named {@code <base>-<yyyyMMdd-HHmmss-SSS>-<n>.log} and become {@code .log.gz} once
+ * compressed; only the newest {@code maxArchives} compressed segments are kept. Leftover
+ * uncompressed segments, e.g. from a crash, are picked up by the next compression pass.
+ *
+ * Records are not flushed individually; put an {@link AsyncLogHandler} in front, or call flush.
+ */
+public class RotatingFileHandler extends Handler {
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path file;
+    private final String baseName;
+    private final long maxBytes;
+    private final long intervalMillis;
+    private final int maxArchives;
+    private final ExecutorService compressor;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private OutputStream out;
+    private long written;
+    private long nextRolloverMillis;
+
+    /**
+     * @param file         active log file; segments are written alongside it
+     * @param maxBytes     roll over once the active file would exceed this size
+     * @param interval     also roll over at each multiple of this interval since the epoch (UTC)
+     * @param maxArchives  compressed segments to keep
+     */
+    public RotatingFileHandler(Path file, long maxBytes, long interval, TimeUnit unit, int maxArchives)
+            throws IOException {
+        this.file = file.toAbsolutePath();
+        String name = this.file.getFileName().toString();
+        this.baseName = name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+        this.maxBytes = maxBytes;
+        this.intervalMillis = unit.toMillis(interval);
+        this.maxArchives = maxArchives;
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "log-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        setFormatter(new SimpleFormatter());
+
+        Files.createDirectories(this.file.getParent());
+        open();
+        compressor.execute(this::compressAndPrune);
+    }
+
+    private void open() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        written = Files.size(file);
+        long now = System.currentTimeMillis();
+        nextRolloverMillis = (now / intervalMillis + 1) * intervalMillis;
+    }
+
+    @Override
+    public synchronized void publish(LogRecord record) {
+        if (out == null || !isLoggable(record)) {
+            return;
+        }
+        String message;
+        try {
+            message = getFormatter().format(record);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (written > 0 && (written + bytes.length > maxBytes || System.currentTimeMillis() >= nextRolloverMillis)) {
+                rollOver();
+            }
+            out.write(bytes);
+            written += bytes.length;
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void rollOver() throws IOException {
+        out.close();
+        Path segment = file.resolveSibling(baseName + "-" + LocalDateTime.now().format(STAMP)
+                + "-" + sequence.getAndIncrement() + ".log");
+        try {
+            Files.move(file, segment, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // If the rename failed, keep appending to the same file and retry on the next record
+            open();
+        }
+        compressor.execute(this::compressAndPrune);
+    }
+
+    // Runs on the compressor thread only
+    private void compressAndPrune() {
+        try {
+            for (Path segment : segments(".log")) {
+                Path gz = segment.resolveSibling(segment.getFileName() + ".gz");
+                Path temp = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+                try (InputStream in = Files.newInputStream(segment);
+                     OutputStream gzOut = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                    in.transferTo(gzOut);
+                }
+                Files.move(temp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.delete(segment);
+            }
+
+            List<Path> archives = segments(".log.gz");
+            // Names sort by timestamp, newest last
+            for (int i = 0; i < archives.size() - maxArchives; i++) {
+                Files.deleteIfExists(archives.get(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            reportError("Log segment compression failed", e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    private List<Path> segments(String suffix) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.getParent(), baseName + "-*" + suffix)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        }
+        result.sort(Comparator.comparing(path -> segmentOrder(path.getFileName().toString())));
+        return result;
+    }
+
+    // Zero-pads the sequence number so "-10" sorts after "-9" within the same millisecond
+    private String segmentOrder(String name) {
+        int end = name.indexOf(".log");
+        int dash = name.lastIndexOf('-', end);
+        String sequenceNumber = name.substring(dash + 1, end);
+        return name.substring(0, dash) + "-" + "0".repeat(Math.max(0, 10 - sequenceNumber.length())) + sequenceNumber;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+        out = null;
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.interview.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory login sessions behind opaque random tokens.
+ *
+ * Validation is a hash-map lookup plus a volatile write to slide the idle deadline; the
+ * database is never consulted. Expiry uses a hierarchical timing wheel: each session sits in
+ * one slot for its deadline, and a background tick only looks at the slot that is due, so
+ * idle sessions are reaped without scanning the whole store. Touching a session doesn't move
+ * it in the wheel. When its slot comes due and the deadline has since moved, it is simply
+ * rescheduled.
+ *
+ * Sessions are keyed by a SHA-256 of the token, so an optional on-disk snapshot (used to
+ * survive restarts) doesn't contain usable tokens.
+ */
+public class SessionStore implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SessionStore.class.getName());
+
+    private static final int SNAPSHOT_MAGIC = 0x53455353;
+    private static final int TOKEN_BYTES = 32;
+
+    public static final class Session {
+        private final int userId;
+        private final String username;
+        private volatile long expiresAtMillis;
+
+        private Session(int userId, String username, long expiresAtMillis) {
+            this.userId = userId;
+            this.username = username;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public int userId() {
+            return userId;
+        }
+
+        public String username() {
+            return username;
+        }
+    }
+
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final TimingWheel wheel;
+    private final ScheduledExecutorService scheduler;
+    private Path snapshotPath;
+
+    public SessionStore(long idleTimeout, TimeUnit unit, long tickMillis) {
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        this.tickMillis = tickMillis;
+        this.wheel = new TimingWheel(System.currentTimeMillis() / tickMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the token to hand to the client
+    public String create(int userId, String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        String key = key(token);
+        Session session = new Session(userId, username, System.currentTimeMillis() + idleTimeoutMillis);
+        sessions.put(key, session);
+        wheel.schedule(key, session.expiresAtMillis / tickMillis + 1);
+        return token;
+    }
+
+    /**
+     * Returns the token's session and slides its idle deadline, or null if the token is unknown
+     * or expired.
+     */
+    public Session validate(String token) {
+        String key = key(token);
+        Session session = sessions.get(key);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAtMillis <= now) {
+            // The wheel reaps it within a tick; don't honour it meanwhile
+            sessions.remove(key, session);
+            return null;
+        }
+        session.expiresAtMillis = now + idleTimeoutMillis;
+        return session;
+    }
+
+    public void invalidate(String token) {
+        // The wheel entry is dropped when its slot comes due
+        sessions.remove(key(token));
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void expireDue() {
+        try {
+            long nowTick = System.currentTimeMillis() / tickMillis;
+            List<String> due = new ArrayList<>();
+            wheel.advanceTo(nowTick, due);
+
+            long now = System.currentTimeMillis();
+            for (String key : due) {
+                Session session = sessions.get(key);
+                if (session == null) {
+                    continue;
+                }
+                long expiresAt = session.expiresAtMillis;
+                if (expiresAt > now) {
+                    wheel.schedule(key, expiresAt / tickMillis + 1);
+                } else {
+                    sessions.remove(key, session);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Session expiry failed", e);
+        }
+    }
+
+    /**
+     * Loads sessions from a snapshot written by {@link #snapshot}, skipping expired ones.
+     * A missing file is not an error.
+     *
+     * @return number of sessions restored
+     */
+    public int restore(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a session snapshot: " + path);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int userId = in.readInt();
+                String username = in.readUTF();
+                long expiresAt = in.readLong();
+                if (expiresAt > now) {
+                    Session session = new Session(userId, username, expiresAt);
+                    sessions.put(key, session);
+                    wheel.schedule(key, expiresAt / tickMillis + 1);
+                    restored++;
+                }
+            }
+        }
+        return restored;
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves a torn snapshot
+    public void snapshot(Path path) throws IOException {
+        List<Map.Entry<String, Session>> rows = new ArrayList<>(sessions.entrySet());
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(rows.size());
+            for (Map.Entry<String, Session> row : rows) {
+                Session session = row.getValue();
+                out.writeUTF(row.getKey());
+                out.writeInt(session.userId);
+                out.writeUTF(session.username);
+                out.writeLong(session.expiresAtMillis);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void startSnapshots(Path path, long interval, TimeUnit unit) {
+        snapshotPath = path;
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(path);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Session snapshot failed", e);
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override
+    public synchronized void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (snapshotPath != null) {
+            try {
+                snapshot(snapshotPath);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Final session snapshot failed", e);
+            }
+        }
+    }
+
+    private static String key(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /*
+     * Four levels of 64 slots. Level n slots each cover 64^n ticks, so with one-second ticks the
+     * wheel spans about 194 days. When the lower levels wrap, the due slot of the level above
+     * is cascaded, i.e. its entries are rescheduled into finer slots. Deadlines beyond the span
+     * are parked in the top level and rescheduled when they come round.
+     */
+    private static class TimingWheel {
+        private static final int LEVELS = 4;
+        private static final int SLOT_BITS = 6;
+        private static final int SLOTS = 1 << SLOT_BITS;
+        private static final int MASK = SLOTS - 1;
+
+        private final List<List<Entry>> slots = new ArrayList<>(LEVELS * SLOTS);
+        private long currentTick;
+
+        private record Entry(String key, long deadlineTick) {
+        }
+
+        TimingWheel(long startTick) {
+            this.currentTick = startTick;
+            for (int i = 0; i < LEVELS * SLOTS; i++) {
+                slots.add(new ArrayList<>());
+            }
+        }
+
+        synchronized void schedule(String key, long deadlineTick) {
+            place(new Entry(key, Math.max(deadlineTick, currentTick + 1)));
+        }
+
+        // Advances one tick at a time so no slot is skipped, collecting keys that came due
+        synchronized void advanceTo(long tick, List<String> due) {
+            while (currentTick < tick) {
+                currentTick++;
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        List<Entry> slot = slot(level, currentTick);
+                        List<Entry> cascaded = new ArrayList<>(slot);
+                        slot.clear();
+                        for (Entry entry : cascaded) {
+                            place(entry);
+                        }
+                    }
+                }
+                List<Entry> slot = slot(0, currentTick);
+                for (Entry entry : slot) {
+                    due.add(entry.key());
+                }
+                slot.clear();
+            }
+        }
+
+        private void place(Entry entry) {
+            long delta = entry.deadlineTick() - currentTick;
+            if (delta <= 0) {
+                // Due now: cascaded into the slot being processed
+                slot(0, currentTick).add(entry);
+                return;
+            }
+            for (int level = 0; level < LEVELS; level++) {
+                if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                    slot(level, entry.deadlineTick()).add(entry);
+                    return;
+                }
+            }
+            // Beyond the wheel's span: park in the furthest top-level slot
+            int top = LEVELS - 1;
+            slot(top, currentTick + (1L << (SLOT_BITS * LEVELS)) - 1).add(entry);
+        }
+
+        private List<Entry> slot(int level, long tick) {
+            return slots.get(level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & MASK));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.interview.util;
+
+import java.sql.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk upsert for incoming feeds: rows are loaded into a TEMP staging table and applied
+ * to the target with one set-based INSERT ... SELECT ... ON CONFLICT DO UPDATE,
+ * instead of a "select, then insert or update" round trip per row.
+ *
+ * When the same key appears several times in one feed the last row wins.
+ *
+ * Orders are append-only, because the delta refresh of customer_stats only looks at order ids
+ * above its watermark and would miss updates. {@link Target#ORDERS} is therefore keyed by
+ * idempotency_key and never updates: rows whose key was already imported are skipped, and the
+ * first row wins within a feed. Merged orders get no outbox events; callers append them with
+ * {@link OrderOutbox#appendOrdersAfter}, as basket checkout does.
+ */
+public class StagedUpsert {
+    private static final int MAX_PARAMS_PER_STATEMENT = 999;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * Describes a merge target. {@code columns} is the order values appear in each incoming row
+     * and must include {@code keyColumn}; a null key inserts a new row with a generated id.
+     * {@code keyColumn} needs a unique index, which may be partial on {@code keyColumn IS NOT NULL}.
+     * Columns may be a subset, but must cover every NOT NULL column without a default, since
+     * SQLite checks those before it resolves the conflict.
+     * With {@code updateExisting} false, rows whose key already exists are skipped.
+     */
+    public record Target(String table, String keyColumn, List<String> columns, boolean updateExisting) {
+        public static final Target PRODUCTS = new Target("products", "product_id",
+                List.of("product_id", "name", "price", "stock"));
+        public static final Target CUSTOMERS = new Target("customers", "customer_id",
+                List.of("customer_id", "name", "email"));
+        public static final Target ORDERS = new Target("orders", "idempotency_key",
+                List.of("idempotency_key", "customer_id", "product_id", "quantity"), false);
+
+        public Target {
+            requireIdentifier(table);
+            requireIdentifier(keyColumn);
+            columns.forEach(StagedUpsert::requireIdentifier);
+            if (!columns.contains(keyColumn)) {
+                throw new IllegalArgumentException("Key column " + keyColumn + " missing from columns");
+            }
+            columns = List.copyOf(columns);
+        }
+
+        public Target(String table, String keyColumn, List<String> columns) {
+            this(table, keyColumn, columns, true);
+        }
+
+        String stagingTable() {
+            return "staged_" + table;
+        }
+    }
+
+    /**
+     * Merges {@code rows} into the target table. Runs in its own transaction when the
+     * connection is in auto-commit mode, otherwise joins the caller's transaction.
+     *
+     * @return number of rows inserted or updated
+     */
+    public static int merge(Connection conn, Target target, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        boolean ownTransaction = conn.getAutoCommit();
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+
+        try {
+            prepareStagingTable(conn, target);
+            loadStagingTable(conn, target, rows);
+            int merged = applyStagingTable(conn, target);
+
+            if (ownTransaction) {
+                conn.commit();
+            }
+            return merged;
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Recreated per merge, so targets on the same table with different columns don't collide
+    private static void prepareStagingTable(Connection conn, Target target) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS temp." + target.stagingTable());
+            // Untyped columns: values keep whatever affinity the target table applies on merge
+            stmt.execute("CREATE TEMP TABLE " + target.stagingTable()
+                    + " (" + String.join(", ", target.columns()) + ")");
+        }
+    }
+
+    private static void loadStagingTable(Connection conn, Target target, List<Object[]> rows)
+            throws SQLException {
+        int width = target.columns().size();
+        int rowsPerStatement = Math.max(1, MAX_PARAMS_PER_STATEMENT / width);
+        String rowPlaceholder = "(" + String.join(", ", Collections.nCopies(width, "?")) + ")";
+        String insertPrefix = "INSERT INTO temp." + target.stagingTable()
+                + " (" + String.join(", ", target.columns()) + ") VALUES ";
+
+        PreparedStatement full = null;
+        try {
+            for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                int count = Math.min(rowsPerStatement, rows.size() - from);
+                boolean reuse = count == rowsPerStatement;
+
+                if (reuse && full == null) {
+                    full = conn.prepareStatement(insertPrefix
+                            + String.join(", ", Collections.nCopies(rowsPerStatement, rowPlaceholder)));
+                }
+                PreparedStatement pstmt = reuse ? full : conn.prepareStatement(insertPrefix
+                        + String.join(", ", Collections.nCopies(count, rowPlaceholder)));
+
+                try {
+                    int param = 1;
+                    for (int r = from; r < from + count; r++) {
+                        Object[] row = rows.get(r);
+                        if (row.length != width) {
+                            throw new IllegalArgumentException(String.format(
+                                    "Row %d has %d values, expected %d for %s", r, row.length, width, target.table()));
+                        }
+                        for (Object value : row) {
+                            pstmt.setObject(param++, value);
+                        }
+                    }
+                    pstmt.executeUpdate();
+                } finally {
+                    if (!reuse) {
+                        pstmt.close();
+                    }
+                }
+            }
+        } finally {
+            if (full != null) {
+                full.close();
+            }
+        }
+    }
+
+    private static int applyStagingTable(Connection conn, Target target) throws SQLException {
+        String columns = String.join(", ", target.columns());
+        String updates = target.columns().stream()
+                .filter(column -> !column.equals(target.keyColumn()))
+                .map(column -> column + " = excluded." + column)
+                .collect(Collectors.joining(", "));
+
+        // "WHERE true" is required by SQLite to parse an upsert on INSERT ... SELECT.
+        // The conflict target's WHERE matches partial unique indexes as well as primary keys.
+        String sql = "INSERT INTO " + target.table() + " (" + columns + ")"
+                + " SELECT " + columns + " FROM temp." + target.stagingTable()
+                + " WHERE true ORDER BY rowid"
+                + " ON CONFLICT(" + target.keyColumn() + ") WHERE " + target.keyColumn() + " IS NOT NULL DO "
+                + (updates.isEmpty() || !target.updateExisting() ? "NOTHING" : "UPDATE SET " + updates);
+
+        try (Statement stmt = conn.createStatement()) {
+            int merged = stmt.executeUpdate(sql);
+            stmt.execute("DROP TABLE temp." + target.stagingTable());
+            return merged;
+        }
+    }
+
+    private static void requireIdentifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid SQL identifier: " + name);
+        }
+    }
+}
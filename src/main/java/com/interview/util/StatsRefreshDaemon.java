@@ -0,0 +1,155 @@
+package com.interview.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps customer_stats fresh without polling the orders table.
+ *
+ * A dedicated connection polls PRAGMA data_version, which only changes when another
+ * connection commits, so an idle database costs one trivial pragma per poll. Bursts of
+ * commits are coalesced: a delta refresh runs once changes have been quiet for
+ * {@code quietPeriod}, or once the oldest unrefreshed change reaches {@code maxStaleness},
+ * whichever comes first.
+ *
+ * The refresh runs on the polling connection itself, so the refresher's own commits don't
+ * register as changes and retrigger it. SQLite update hooks only report writes made through
+ * the same connection, so they can't see other processes' orders; data_version can.
+ */
+public class StatsRefreshDaemon implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(StatsRefreshDaemon.class.getName());
+
+    private final long pollIntervalMillis;
+    private final long quietPeriodNanos;
+    private final long maxStalenessNanos;
+    private final ScheduledExecutorService scheduler;
+
+    private Connection conn;
+    private long lastVersion = -1;
+    private long firstChangeAt;
+    private long lastChangeAt;
+    private boolean dirty;
+    private long refreshes;
+
+    public StatsRefreshDaemon(long pollIntervalMillis, long quietPeriodMillis, long maxStalenessMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stats-refresh-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        try (StatsRefreshDaemon daemon = new StatsRefreshDaemon(250, 1_000, 10_000)) {
+            daemon.start();
+            System.out.println("Refreshing customer_stats on change; press Ctrl+C to stop.");
+            Thread.currentThread().join();
+        }
+    }
+
+    public void start() {
+        // Catch up on anything that changed while nobody was watching
+        dirty = true;
+        firstChangeAt = lastChangeAt = System.nanoTime() - maxStalenessNanos;
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Only ever runs on the scheduler thread, so the state needs no locking
+    private void poll() {
+        try {
+            if (conn == null) {
+                conn = DatabaseUtil.getConnection();
+            }
+
+            long now = System.nanoTime();
+            long version = dataVersion();
+            if (version != lastVersion) {
+                if (lastVersion != -1) {
+                    if (!dirty) {
+                        firstChangeAt = now;
+                    }
+                    dirty = true;
+                    lastChangeAt = now;
+                }
+                lastVersion = version;
+            }
+
+            if (dirty && (now - lastChangeAt >= quietPeriodNanos || now - firstChangeAt >= maxStalenessNanos)) {
+                refresh();
+                dirty = false;
+            }
+        } catch (SQLException e) {
+            // Changes can be missed while reconnecting, so assume there were some
+            logger.log(Level.WARNING, "Stats refresh failed, will retry", e);
+            closeConnection();
+            if (!dirty) {
+                dirty = true;
+                firstChangeAt = lastChangeAt = System.nanoTime();
+            }
+        }
+    }
+
+    private long dataVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void refresh() throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int touched = CustomerStatsUtil.refreshDelta(conn);
+            conn.commit();
+            refreshes++;
+            logger.fine(() -> "Delta refresh updated " + touched + " customers");
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    public long refreshCount() {
+        try {
+            return scheduler.submit(() -> refreshes).get();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Error closing connection", e);
+            }
+            conn = null;
+            lastVersion = -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnection();
+    }
+}
@@ -0,0 +1,616 @@
+package com.interview.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * In-memory stock ledger for hot products, fronting products.stock.
+ *
+ * Reservations are a CAS on a per-product counter in an open-addressing int-keyed table,
+ * so concurrent orders never take a lock or touch SQLite. Every reservation and release is
+ * handed to a single journal syncer through lock-free striped queues. The syncer appends
+ * whatever has queued up to the write-ahead journal with one write and one fsync, and
+ * {@link #reserve} only reports RESERVED once its record is durable. Reservations on
+ * different products therefore share fsyncs instead of a lock.
+ *
+ * Reserved quantities accumulate per product and are flushed periodically as one batch:
+ * the syncer seals the journal segment covering the batch, then the batch is applied to
+ * products.stock together with a checkpoint row (the last journal sequence it covers) in
+ * the same transaction. On startup every journal record above the checkpoint is replayed,
+ * so a crash loses no acknowledged reservation and never double-applies a flush.
+ *
+ * Releases are not waited on; the stock becomes available again once the release is
+ * journaled. One lost in a crash leaves stock under-counted until corrected, never oversold.
+ * The database stays the system of record; stock added outside the ledger (e.g. restocking)
+ * must be reported through {@link #adjust} once it has committed.
+ */
+public class StockLedger implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(StockLedger.class.getName());
+
+    public enum Reservation {
+        RESERVED, INSUFFICIENT, NOT_TRACKED
+    }
+
+    private static final int EMPTY = 0;
+    // sequence, product id, delta, CRC32
+    private static final int RECORD_BYTES = 20;
+    private static final int STRIPES = 16;
+    private static final int RECORDS_PER_WRITE = 512;
+    private static final long SYNCER_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // A change waiting for the syncer; slot is where productId lives in the table
+    private record Entry(int slot, int productId, int delta, CompletableFuture<Void> durable) {
+    }
+
+    // Reserved quantities per product and the last journal sequence they cover
+    private record Batch(long sequence, int[][] deltas) {
+    }
+
+    private final Path journalPath;
+    // Segment covering the batch being flushed; deleted once the batch commits
+    private final Path sealedPath;
+    private final TransactionTemplate.ConnectionSource connections;
+    private final int mask;
+    // Slot i holds product keys[i]; 0 marks an empty slot (product ids start at 1)
+    private final AtomicIntegerArray keys;
+    private final AtomicIntegerArray available;
+    // Journaled but not yet flushed; only the syncer changes it
+    private final AtomicIntegerArray pending;
+
+    private final List<Queue<Entry>> stripes = new ArrayList<>(STRIPES);
+    private final AtomicReference<CompletableFuture<Batch>> sealRequest = new AtomicReference<>();
+    private volatile boolean running;
+    private volatile Thread syncer;
+
+    // Confined to the syncer once it has started
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORDS_PER_WRITE * RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel journal;
+    private long journalSequence;
+
+    // Guarded by flushLock
+    private final Object flushLock = new Object();
+    private Batch unapplied;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * @param capacity    maximum number of tracked products
+     * @param journalPath write-ahead journal for reservations
+     */
+    public StockLedger(int capacity, Path journalPath) {
+        this(capacity, journalPath, DatabaseUtil::getConnection);
+    }
+
+    // connections is used by the background flusher and by close
+    public StockLedger(int capacity, Path journalPath, TransactionTemplate.ConnectionSource connections) {
+        int size = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.mask = size - 1;
+        this.keys = new AtomicIntegerArray(size);
+        this.available = new AtomicIntegerArray(size);
+        this.pending = new AtomicIntegerArray(size);
+        this.journalPath = journalPath;
+        this.sealedPath = journalPath.resolveSibling(journalPath.getFileName() + ".sealed");
+        this.connections = connections;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Replays journaled reservations the database hasn't seen and starts tracking the given products
+     * with their current stock.
+     */
+    public void open(Connection conn, int... productIds) throws SQLException {
+        ensureCheckpointTable(conn);
+        recover(conn);
+
+        String sql = "SELECT stock FROM products WHERE product_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int productId : productIds) {
+                pstmt.setInt(1, productId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        track(productId, rs.getInt("stock"));
+                    }
+                }
+            }
+        }
+    }
+
+    // Slow path, only used while loading; reservations never take this lock
+    private synchronized void track(int productId, int stock) {
+        if (productId <= 0) {
+            throw new IllegalArgumentException("Product id must be positive: " + productId);
+        }
+        int slot = hash(productId);
+        for (int probe = 0; probe <= mask; probe++) {
+            int key = keys.get(slot);
+            if (key == productId) {
+                // Already tracked: the ledger's own count is newer than the database
+                return;
+            }
+            if (key == EMPTY) {
+                available.set(slot, stock);
+                pending.set(slot, 0);
+                keys.set(slot, productId);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IllegalStateException("Stock ledger is full");
+    }
+
+    public Reservation reserve(int productId, int quantity) {
+        int slot = find(productId);
+        if (slot < 0) {
+            return Reservation.NOT_TRACKED;
+        }
+        while (true) {
+            int current = available.get(slot);
+            if (current < quantity) {
+                return Reservation.INSUFFICIENT;
+            }
+            if (available.compareAndSet(slot, current, current - quantity)) {
+                break;
+            }
+        }
+
+        try {
+            journal(new Entry(slot, productId, quantity, new CompletableFuture<>())).join();
+        } catch (CompletionException e) {
+            available.addAndGet(slot, quantity);
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+        return Reservation.RESERVED;
+    }
+
+    // Returns a reservation that won't be used, e.g. because the order transaction failed
+    public void release(int productId, int quantity) {
+        int slot = find(productId);
+        if (slot >= 0) {
+            // Available again once journaled, with the next batch the syncer writes
+            journal(new Entry(slot, productId, -quantity, new CompletableFuture<>()));
+        }
+    }
+
+    // Applies a stock change already committed to the database outside the ledger
+    public void adjust(int productId, int delta) {
+        int slot = find(productId);
+        if (slot >= 0) {
+            available.addAndGet(slot, delta);
+        }
+    }
+
+    public int available(int productId) {
+        int slot = find(productId);
+        return slot < 0 ? -1 : available.get(slot);
+    }
+
+    private int find(int productId) {
+        int slot = hash(productId);
+        for (int probe = 0; probe <= mask; probe++) {
+            int key = keys.get(slot);
+            if (key == productId) {
+                return slot;
+            }
+            if (key == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int hash(int productId) {
+        int h = productId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Queues a change for the syncer; the future completes once it is durable
+    private CompletableFuture<Void> journal(Entry entry) {
+        if (!running) {
+            entry.durable().completeExceptionally(new IllegalStateException("Stock ledger is closed"));
+            return entry.durable();
+        }
+        stripes.get(entry.slot() & (STRIPES - 1)).add(entry);
+        LockSupport.unpark(syncer);
+        // The syncer may have drained its last batch just before this entry was queued
+        if (!running && !syncer.isAlive()) {
+            failAbandoned();
+        }
+        return entry.durable();
+    }
+
+    private void runSyncer() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            for (Queue<Entry> stripe : stripes) {
+                Entry entry;
+                while ((entry = stripe.poll()) != null) {
+                    batch.add(entry);
+                }
+            }
+            boolean idle = batch.isEmpty();
+            if (!idle) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            CompletableFuture<Batch> request = sealRequest.getAndSet(null);
+            if (request != null) {
+                seal(request);
+                idle = false;
+            }
+            if (idle) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, SYNCER_IDLE_NANOS);
+            }
+        }
+    }
+
+    // One write and one fsync for every queued change; on failure none of them counts
+    private void writeBatch(List<Entry> batch) {
+        long sequence = journalSequence;
+        long position = -1;
+        try {
+            position = journal.position();
+            writeBuffer.clear();
+            for (Entry entry : batch) {
+                if (writeBuffer.remaining() < RECORD_BYTES) {
+                    writeFully(writeBuffer.flip());
+                    writeBuffer.clear();
+                }
+                int start = writeBuffer.position();
+                writeBuffer.putLong(++sequence).putInt(entry.productId()).putInt(entry.delta());
+                crc.reset();
+                crc.update(writeBuffer.array(), start, RECORD_BYTES - 4);
+                writeBuffer.putInt((int) crc.getValue());
+            }
+            writeFully(writeBuffer.flip());
+            journal.force(false);
+        } catch (IOException e) {
+            // Drop the batch so later records stay readable; if that fails too, a replay may
+            // count it, which undersells rather than oversells
+            if (position >= 0) {
+                try {
+                    journal.truncate(position);
+                    journal.position(position);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            logger.log(Level.WARNING, "Cannot write stock ledger journal " + journalPath, e);
+            UncheckedIOException failure = new UncheckedIOException("Cannot write stock ledger journal " + journalPath, e);
+            batch.forEach(entry -> entry.durable().completeExceptionally(failure));
+            return;
+        }
+
+        journalSequence = sequence;
+        for (Entry entry : batch) {
+            pending.addAndGet(entry.slot(), entry.delta());
+            if (entry.delta() < 0) {
+                available.addAndGet(entry.slot(), -entry.delta());
+            }
+            entry.durable().complete(null);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+    }
+
+    // Runs on the syncer between batches, so pending matches exactly what the sealed segment holds
+    private void seal(CompletableFuture<Batch> request) {
+        List<int[]> deltas = new ArrayList<>();
+        for (int slot = 0; slot <= mask; slot++) {
+            int productId = keys.get(slot);
+            if (productId != EMPTY) {
+                int reserved = pending.getAndSet(slot, 0);
+                if (reserved != 0) {
+                    deltas.add(new int[]{productId, reserved});
+                }
+            }
+        }
+        if (deltas.isEmpty()) {
+            request.complete(null);
+            return;
+        }
+        try {
+            journal.close();
+            Files.move(journalPath, sealedPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = openJournal();
+        } catch (IOException e) {
+            // Nothing was applied yet, so hand the quantities back to the next flush
+            for (int[] delta : deltas) {
+                pending.addAndGet(find(delta[0]), delta[1]);
+            }
+            if (!journal.isOpen()) {
+                try {
+                    journal = openJournal();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            request.completeExceptionally(new UncheckedIOException("Cannot seal stock ledger journal " + journalPath, e));
+            return;
+        }
+        request.complete(new Batch(journalSequence, deltas.toArray(new int[0][])));
+    }
+
+    // Fails changes nobody will journal any more, once the syncer has stopped
+    private void failAbandoned() {
+        IllegalStateException closed = new IllegalStateException("Stock ledger is closed");
+        for (Queue<Entry> stripe : stripes) {
+            Entry entry;
+            while ((entry = stripe.poll()) != null) {
+                entry.durable().completeExceptionally(closed);
+            }
+        }
+        CompletableFuture<Batch> request = sealRequest.getAndSet(null);
+        if (request != null) {
+            request.completeExceptionally(closed);
+        }
+    }
+
+    public void startFlushing(long interval, TimeUnit unit) {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try (Connection conn = connections.getConnection()) {
+                flush(conn);
+            } catch (SQLException | UncheckedIOException e) {
+                logger.log(Level.WARNING, "Stock ledger flush failed, will retry", e);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Moves reserved quantities into products.stock: the syncer seals the journal segment,
+     * then one transaction applies it.
+     *
+     * @return number of products updated
+     */
+    public int flush(Connection conn) throws SQLException {
+        synchronized (flushLock) {
+            if (syncer == null) {
+                return 0;
+            }
+            // A batch whose commit failed is retried as-is before anything new is collected
+            if (unapplied == null) {
+                unapplied = requestSeal();
+                if (unapplied == null) {
+                    return 0;
+                }
+            }
+
+            applyBatch(conn, unapplied.sequence(), unapplied.deltas());
+            int applied = unapplied.deltas().length;
+            unapplied = null;
+            deleteSealedJournal();
+            return applied;
+        }
+    }
+
+    private Batch requestSeal() {
+        CompletableFuture<Batch> request = new CompletableFuture<>();
+        sealRequest.set(request);
+        LockSupport.unpark(syncer);
+        if (!syncer.isAlive()) {
+            failAbandoned();
+        }
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    private FileChannel openJournal() throws IOException {
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private void deleteSealedJournal() {
+        try {
+            Files.deleteIfExists(sealedPath);
+        } catch (IOException e) {
+            // Harmless: replay skips records at or below the checkpoint
+            logger.log(Level.WARNING, "Cannot delete sealed stock ledger journal", e);
+        }
+    }
+
+    private void applyBatch(Connection conn, long sequence, int[][] batch) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // Advancing the checkpoint first makes a retried or replayed batch a no-op if it already committed
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE stock_ledger_checkpoint SET last_sequence = ? WHERE ledger_id = 1 AND last_sequence < ?")) {
+                pstmt.setLong(1, sequence);
+                pstmt.setLong(2, sequence);
+                if (pstmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return;
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE products SET stock = stock - ? WHERE product_id = ?")) {
+                for (int[] delta : batch) {
+                    pstmt.setInt(1, delta[1]);
+                    pstmt.setInt(2, delta[0]);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void ensureCheckpointTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS stock_ledger_checkpoint (
+                            ledger_id INTEGER PRIMARY KEY CHECK (ledger_id = 1),
+                            last_sequence INTEGER NOT NULL
+                        )
+                    """);
+            stmt.execute("INSERT OR IGNORE INTO stock_ledger_checkpoint (ledger_id, last_sequence) VALUES (1, 0)");
+        }
+    }
+
+    private void recover(Connection conn) throws SQLException {
+        long checkpoint;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_sequence FROM stock_ledger_checkpoint WHERE ledger_id = 1")) {
+            checkpoint = rs.next() ? rs.getLong("last_sequence") : 0;
+        }
+
+        synchronized (flushLock) {
+            if (syncer != null) {
+                return;
+            }
+            // The sealed segment is older than the active one
+            Map<Integer, Integer> deltas = new LinkedHashMap<>();
+            long last = checkpoint;
+            for (Path segment : List.of(sealedPath, journalPath)) {
+                last = Math.max(last, readSegment(segment, checkpoint, deltas));
+            }
+            if (last > checkpoint) {
+                logger.info("Replaying stock ledger journal up to sequence " + last);
+                int[][] batch = deltas.entrySet().stream()
+                        .filter(delta -> delta.getValue() != 0)
+                        .map(delta -> new int[]{delta.getKey(), delta.getValue()})
+                        .toArray(int[][]::new);
+                applyBatch(conn, last, batch);
+            }
+
+            try {
+                Files.deleteIfExists(sealedPath);
+                Files.deleteIfExists(journalPath);
+                journal = openJournal();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open stock ledger journal " + journalPath, e);
+            }
+            journalSequence = last;
+
+            Thread thread = new Thread(this::runSyncer, "stock-ledger-syncer");
+            thread.setDaemon(true);
+            syncer = thread;
+            running = true;
+            thread.start();
+        }
+    }
+
+    // Adds up records above the checkpoint per product; returns the highest sequence read
+    private long readSegment(Path segment, long checkpoint, Map<Integer, Integer> deltas) {
+        long last = 0;
+        if (!Files.exists(segment)) {
+            return last;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(RECORD_BYTES);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                try {
+                    in.readFully(entry.array());
+                } catch (EOFException e) {
+                    // Clean end, or a torn write of a record that was never acknowledged
+                    break;
+                }
+                entry.clear();
+                long sequence = entry.getLong();
+                int productId = entry.getInt();
+                int delta = entry.getInt();
+                CRC32 crc = new CRC32();
+                crc.update(entry.array(), 0, RECORD_BYTES - 4);
+                if ((int) crc.getValue() != entry.getInt()) {
+                    logger.warning("Ignoring corrupt stock ledger journal tail in " + segment);
+                    break;
+                }
+                last = sequence;
+                if (sequence > checkpoint) {
+                    deltas.merge(productId, delta, Integer::sum);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read stock ledger journal " + segment, e);
+        }
+        return last;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try (Connection conn = connections.getConnection()) {
+            flush(conn);
+        } finally {
+            stopSyncer();
+        }
+    }
+
+    private void stopSyncer() {
+        synchronized (flushLock) {
+            if (syncer == null || !running) {
+                return;
+            }
+            running = false;
+            LockSupport.unpark(syncer);
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failAbandoned();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot close stock ledger journal", e);
+            }
+        }
+    }
+}
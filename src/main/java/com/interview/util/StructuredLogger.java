@@ -0,0 +1,200 @@
+package com.interview.util;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Thin facade over java.util.logging for hot paths.
+ *
+ * {@code log.at(Level.INFO).with("productId", id).with("quantity", qty).log("Stock updated")}
+ * renders as {@code Stock updated productId=7 quantity=5}. When the level is disabled,
+ * {@link #at} returns a shared no-op event, so the whole chain costs a level check and
+ * allocates nothing (primitive overloads avoid boxing). When enabled, fields are appended
+ * to a thread-local buffer that is reused across calls; only the final message string and
+ * the LogRecord are allocated. Object values are only turned into strings when enabled.
+ *
+ * Events are single-use: finish each chain with log() before starting another.
+ */
+public final class StructuredLogger {
+    private static final Event DISABLED = new Event(false);
+    private static final ThreadLocal<Event> EVENTS = ThreadLocal.withInitial(() -> new Event(true));
+
+    private final Logger logger;
+
+    private StructuredLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static StructuredLogger of(Logger logger) {
+        return new StructuredLogger(logger);
+    }
+
+    public static StructuredLogger getLogger(Class<?> type) {
+        return new StructuredLogger(Logger.getLogger(type.getName()));
+    }
+
+    public boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    public Event at(Level level) {
+        if (!logger.isLoggable(level)) {
+            return DISABLED;
+        }
+        Event event = EVENTS.get();
+        if (event.inUse) {
+            // A value's toString logged something itself; don't clobber the outer event
+            event = new Event(true);
+        }
+        event.begin(logger, level);
+        return event;
+    }
+
+    public static final class Event {
+        private final boolean enabled;
+        private final StringBuilder fields = new StringBuilder(128);
+        private Logger logger;
+        private Level level;
+        private Throwable thrown;
+        private boolean inUse;
+
+        private Event(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        private void begin(Logger logger, Level level) {
+            this.logger = logger;
+            this.level = level;
+            this.inUse = true;
+        }
+
+        public Event with(String key, long value) {
+            if (enabled) {
+                fields.append(' ').append(key).append('=').append(value);
+            }
+            return this;
+        }
+
+        public Event with(String key, double value) {
+            if (enabled) {
+                fields.append(' ').append(key).append('=').append(value);
+            }
+            return this;
+        }
+
+        public Event with(String key, boolean value) {
+            if (enabled) {
+                fields.append(' ').append(key).append('=').append(value);
+            }
+            return this;
+        }
+
+        public Event with(String key, Object value) {
+            if (enabled) {
+                fields.append(' ').append(key).append('=');
+                appendValue(value == null ? "null" : value.toString());
+            }
+            return this;
+        }
+
+        public Event cause(Throwable thrown) {
+            if (enabled) {
+                this.thrown = thrown;
+            }
+            return this;
+        }
+
+        public void log(String message) {
+            if (!enabled) {
+                return;
+            }
+            try {
+                LogRecord record = new CallerRecord(level, fields.isEmpty() ? message : message + fields);
+                record.setLoggerName(logger.getName());
+                record.setThrown(thrown);
+                logger.log(record);
+            } finally {
+                fields.setLength(0);
+                // Shrink buffers that one huge event blew up, so threads don't pin the memory
+                if (fields.capacity() > 4_096) {
+                    fields.trimToSize();
+                }
+                thrown = null;
+                logger = null;
+                level = null;
+                inUse = false;
+            }
+        }
+
+        // logfmt: values with spaces, quotes or '=' are quoted and escaped
+        private void appendValue(String value) {
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c <= ' ' || c == '"' || c == '=';
+            }
+            if (!quote) {
+                fields.append(value);
+                return;
+            }
+            fields.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> fields.append("\\\"");
+                    case '\\' -> fields.append("\\\\");
+                    case '\n' -> fields.append("\\n");
+                    default -> fields.append(c);
+                }
+            }
+            fields.append('"');
+        }
+    }
+
+    /*
+     * Names the real caller, not this class, but only walks the stack if a handler or formatter
+     * asks for the source, e.g. SimpleFormatter or AsyncLogHandler's caller inference. Must be
+     * asked on the logging thread, which both of those do.
+     */
+    private static final class CallerRecord extends LogRecord {
+        private static final long serialVersionUID = 1L;
+
+        private boolean inferred;
+
+        private CallerRecord(Level level, String message) {
+            super(level, message);
+        }
+
+        @Override
+        public String getSourceClassName() {
+            inferCaller();
+            return super.getSourceClassName();
+        }
+
+        @Override
+        public String getSourceMethodName() {
+            inferCaller();
+            return super.getSourceMethodName();
+        }
+
+        private void inferCaller() {
+            if (inferred) {
+                return;
+            }
+            inferred = true;
+            // This record and the handlers sit above Event.log; the frame below it is the caller
+            StackWalker.StackFrame caller = StackWalker.getInstance().walk(frames -> frames
+                    .dropWhile(frame -> !isEventLog(frame))
+                    .skip(1)
+                    .findFirst()).orElse(null);
+            // Setting null too stops LogRecord from inferring this class as the caller
+            setSourceClassName(caller == null ? null : caller.getClassName());
+            setSourceMethodName(caller == null ? null : caller.getMethodName());
+        }
+
+        private static boolean isEventLog(StackWalker.StackFrame frame) {
+            return frame.getClassName().equals(Event.class.getName()) && frame.getMethodName().equals("log");
+        }
+    }
+}
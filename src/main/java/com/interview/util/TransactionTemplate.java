@@ -0,0 +1,186 @@
+package com.interview.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a unit of work in a transaction and retries the whole unit when SQLite reports
+ * SQLITE_BUSY or SQLITE_LOCKED, with bounded, jittered exponential backoff.
+ *
+ * Each attempt sets a short PRAGMA busy_timeout so SQLite itself waits out brief lock holds.
+ * busy_timeout can't help when SQLite returns BUSY immediately (e.g. a read transaction
+ * that can't upgrade to a write), which is why the unit is retried from the start.
+ * The unit must therefore be safe to run more than once, and side effects outside the
+ * database belong before or after it.
+ *
+ * Attempts, retries, backoff time and give-ups are recorded per operation name.
+ */
+public class TransactionTemplate {
+    private static final Logger logger = Logger.getLogger(TransactionTemplate.class.getName());
+
+    // Primary result codes from sqlite3.h
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    @FunctionalInterface
+    public interface UnitOfWork<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    private final ConnectionSource connectionSource;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int busyTimeoutMillis;
+    private final Map<String, OperationMetrics> metrics = new ConcurrentHashMap<>();
+
+    public TransactionTemplate() {
+        this(DatabaseUtil::getConnection, 5, 10, 500, 250);
+    }
+
+    public TransactionTemplate(ConnectionSource connectionSource, int maxAttempts,
+                               long baseBackoffMillis, long maxBackoffMillis, int busyTimeoutMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.connectionSource = connectionSource;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public <T> T execute(String operation, UnitOfWork<T> work) throws SQLException {
+        OperationMetrics stats = metrics.computeIfAbsent(operation, name -> new OperationMetrics());
+
+        for (int attempt = 1; ; attempt++) {
+            stats.attempts.increment();
+            try {
+                T result = runOnce(work);
+                stats.successes.increment();
+                return result;
+            } catch (SQLException e) {
+                if (!isBusy(e)) {
+                    stats.failures.increment();
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    stats.giveUps.increment();
+                    logger.log(Level.WARNING, String.format(
+                            "%s gave up after %d attempts on a locked database", operation, attempt), e);
+                    throw e;
+                }
+
+                long backoff = backoffMillis(attempt);
+                stats.retries.increment();
+                stats.backoffNanos.add(TimeUnit.MILLISECONDS.toNanos(backoff));
+                stats.maxBackoffNanos.accumulate(TimeUnit.MILLISECONDS.toNanos(backoff));
+                logger.fine(() -> String.format("%s hit a locked database, retrying in %d ms", operation, backoff));
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    stats.giveUps.increment();
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                stats.failures.increment();
+                throw e;
+            }
+        }
+    }
+
+    private <T> T runOnce(UnitOfWork<T> work) throws SQLException {
+        try (Connection conn = connectionSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            }
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))]
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public static boolean isBusy(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sqlException) {
+                // sqlite-jdbc may report extended codes (e.g. SQLITE_BUSY_SNAPSHOT = 517)
+                int primary = sqlException.getErrorCode() & 0xFF;
+                if (primary == SQLITE_BUSY || primary == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED")
+                    || message.contains("database is locked"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        metrics.forEach((name, stats) -> result.put(name, stats.snapshot()));
+        return result;
+    }
+
+    private static class OperationMetrics {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder successes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder giveUps = new LongAdder();
+        final LongAdder backoffNanos = new LongAdder();
+        final LongAccumulator maxBackoffNanos = new LongAccumulator(Math::max, 0);
+
+        Snapshot snapshot() {
+            return new Snapshot(attempts.sum(), successes.sum(), failures.sum(), retries.sum(),
+                    giveUps.sum(), backoffNanos.sum() / 1_000_000, maxBackoffNanos.get() / 1_000_000);
+        }
+    }
+
+    public record Snapshot(long attempts, long successes, long failures, long retries, long giveUps,
+                           long totalBackoffMillis, long maxBackoffMillis) {
+        @Override
+        public String toString() {
+            return String.format("attempts=%d, successes=%d, failures=%d, retries=%d, giveUps=%d, "
+                            + "backoff=%d ms (max %d ms)",
+                    attempts, successes, failures, retries, giveUps, totalBackoffMillis, maxBackoffMillis);
+        }
+    }
+}
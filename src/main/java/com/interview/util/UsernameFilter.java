@@ -0,0 +1,132 @@
+package com.interview.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bloom filter over users.username that answers "definitely no such user" without a query.
+ *
+ * Until the first build finishes every name passes through to the database. A rebuild fills
+ * a fresh filter from a scan of users and swaps it in with a volatile write, so logins keep
+ * using the old filter meanwhile. Names added during a rebuild go into both filters, so an
+ * insert that the scan misses is never lost. Once more names have been added than the filter
+ * was sized for, a rebuild is started in the background.
+ */
+public class UsernameFilter {
+    private static final Logger logger = Logger.getLogger(UsernameFilter.class.getName());
+
+    private static final long MIN_CAPACITY = 10_000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private volatile long capacity;
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "username-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // False only when the username is certainly not in users
+    public boolean mightExist(String username) {
+        lookups.increment();
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(username)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    // Call after the insert commits
+    public void add(String username) {
+        // Read building first: if it's already gone, filter is the new one
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.add(username);
+        }
+        if (current != null && current != next) {
+            current.add(username);
+        }
+        if (added.incrementAndGet() > capacity && current != null) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Scans users into a new filter and swaps it in. Only one rebuild runs at a time; a call
+     * made while another is running returns immediately.
+     */
+    public void rebuild() throws SQLException {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            long count;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                count = rs.getLong(1);
+            }
+            // Headroom so ordinary growth doesn't force an immediate rebuild
+            long newCapacity = Math.max(MIN_CAPACITY, count * 2);
+            BloomFilter next = new BloomFilter(newCapacity, FALSE_POSITIVE_PROBABILITY);
+            building = next;
+
+            long loaded = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT username FROM users")) {
+                while (rs.next()) {
+                    next.add(rs.getString(1));
+                    loaded++;
+                }
+            }
+
+            capacity = newCapacity;
+            added.set(loaded);
+            filter = next;
+            long filterCapacity = newCapacity;
+            long usernames = loaded;
+            logger.fine(() -> "Username filter rebuilt with " + usernames + " names, capacity " + filterCapacity);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    public void rebuildAsync() {
+        if (rebuilding.get()) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            try {
+                rebuild();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Username filter rebuild failed; keeping the current filter", e);
+            }
+        });
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    // Lookups answered without touching the database
+    public long skipped() {
+        return skipped.sum();
+    }
+}
@@ -0,0 +1,93 @@
+package com.interview.combined;
+
+import com.interview.combined.Q04_TransactionManagement.GroupCommitOrderIntake;
+import com.interview.combined.Q04_TransactionManagement.OrderProcessor;
+import com.interview.util.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GroupCommitOrderIntakeTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+    private OrderProcessor processor;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+        processor = new OrderProcessor(null, db.transactions());
+    }
+
+    @Test
+    void failedOrderRollsBackAloneWithinItsGroup() throws SQLException {
+        List<CompletableFuture<Void>> accepted = new ArrayList<>();
+        CompletableFuture<Void> rejected;
+        // A long window, so all four orders land in the same group
+        try (GroupCommitOrderIntake intake = new GroupCommitOrderIntake(processor, 200, 64)) {
+            accepted.add(intake.submit(1, 2, 1));
+            rejected = intake.submit(2, 1, 1_000);
+            accepted.add(intake.submit(2, 2, 1));
+            accepted.add(intake.submit(3, 2, 1));
+
+            accepted.forEach(CompletableFuture::join);
+            assertThrows(CompletionException.class, rejected::join);
+        }
+
+        assertEquals(47, db.stock(2));
+        assertEquals(10, db.stock(1));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM orders WHERE product_id = 1"));
+    }
+
+    @Test
+    void submitAfterCloseFailsInsteadOfHanging() {
+        GroupCommitOrderIntake intake = new GroupCommitOrderIntake(processor, 5, 64);
+        intake.close();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> intake.submit(1, 2, 1).join());
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    private static Thread liveWriter() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("order-group-commit") && thread.isAlive())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void interruptedWriterFailsEveryPendingOrder() throws Exception {
+        // A long window keeps the first order in the group being collected
+        try (GroupCommitOrderIntake intake = new GroupCommitOrderIntake(processor, 5_000, 64)) {
+            CompletableFuture<Void> collecting = intake.submit(1, 2, 1);
+            Thread.sleep(100);
+            Thread writer = liveWriter();
+            writer.interrupt();
+            writer.join(2_000);
+
+            // Bounded waits: a regression shows up as a timeout, not a hung build
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> collecting.get(2, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+            assertThrows(ExecutionException.class, () -> intake.submit(1, 2, 1).get(2, TimeUnit.SECONDS));
+        }
+
+        assertEquals(50, db.stock(2));
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM orders"));
+    }
+}
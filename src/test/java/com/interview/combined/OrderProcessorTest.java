@@ -0,0 +1,185 @@
+package com.interview.combined;
+
+import com.interview.combined.Q04_TransactionManagement.OrderProcessor;
+import com.interview.util.IdempotencyFilter;
+import com.interview.util.StockLedger;
+import com.interview.util.TestDatabase;
+import com.interview.util.TransactionTemplate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderProcessorTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+    private OrderProcessor processor;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+        processor = new OrderProcessor(null, db.transactions());
+    }
+
+    @Test
+    void orderDecrementsStock() throws SQLException {
+        processor.processOrder(1, 1, 4);
+
+        assertEquals(6, db.stock(1));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void orderBeyondStockLeavesNoTrace() throws SQLException {
+        assertThrows(RuntimeException.class, () -> processor.processOrder(1, 1, 11));
+
+        assertEquals(10, db.stock(1));
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            attempts.add(executor.submit(() -> {
+                try {
+                    processor.processOrder(1, 1, 1);
+                    return true;
+                } catch (RuntimeException e) {
+                    // Out of stock, or gave up on lock contention
+                    return false;
+                }
+            }));
+        }
+        int placed = 0;
+        for (Future<Boolean> attempt : attempts) {
+            placed += attempt.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(placed <= 10, "placed " + placed + " orders against a stock of 10");
+        assertEquals(10 - placed, db.stock(1));
+        assertEquals(placed, db.queryLong("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void retryWithTheSameKeyPlacesOneOrder() throws SQLException {
+        assertTrue(processor.processOrder("order-1", 1, 2, 1));
+        assertFalse(processor.processOrder("order-1", 1, 2, 1));
+        assertTrue(processor.processOrder("order-2", 1, 2, 1));
+
+        assertEquals(48, db.stock(2));
+        assertEquals(2, db.queryLong("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void duplicateUnknownToTheFilterIsCaughtByTheUniqueIndex() throws SQLException {
+        assertTrue(processor.processOrder("order-1", 1, 2, 1));
+
+        // A second instance, e.g. after a restart, has an empty in-memory filter
+        OrderProcessor restarted = new OrderProcessor(null, db.transactions());
+        assertFalse(restarted.processOrder("order-1", 1, 2, 1));
+
+        // The duplicate's stock update and outbox event rolled back with it
+        assertEquals(49, db.stock(2));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+    }
+
+    @Test
+    void olderKeyIsSettledByALookupOnTheSameDatabase() throws SQLException {
+        // Remembers one recent key, so order-1 falls back to the Bloom filter once order-2 is placed
+        TransactionTemplate transactions = db.transactions();
+        OrderProcessor processor = new OrderProcessor(null, transactions, new IdempotencyFilter(100, 1));
+        assertTrue(processor.processOrder("order-1", 1, 2, 1));
+        assertTrue(processor.processOrder("order-2", 1, 2, 1));
+
+        assertFalse(processor.processOrder("order-1", 1, 2, 1));
+
+        assertEquals(1, transactions.snapshot().get("orderKeyExists").successes());
+        // Rejected by the lookup, without another order transaction
+        assertEquals(2, transactions.snapshot().get("processOrder").attempts());
+        assertEquals(48, db.stock(2));
+    }
+
+    @Test
+    void trackedProductIsReservedInTheLedgerAndFlushedLater() throws SQLException {
+        StockLedger ledger = new StockLedger(16, dir.resolve("stock.journal"), db::connect);
+        try (Connection conn = db.connect()) {
+            ledger.open(conn, 1);
+        }
+        OrderProcessor withLedger = new OrderProcessor(ledger, db.transactions());
+
+        withLedger.processOrder(1, 1, 4);
+        assertThrows(RuntimeException.class, () -> withLedger.processOrder(1, 1, 7));
+
+        // The order row is written at once; products.stock waits for the ledger's flush
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(10, db.stock(1));
+        assertEquals(6, ledger.available(1));
+        ledger.close();
+        assertEquals(6, db.stock(1));
+    }
+
+    @Test
+    void basketCommitsTheLinesWithStock() throws SQLException {
+        List<Q04_TransactionManagement.LineResult> results = processor.processOrder(1, List.of(
+                new Q04_TransactionManagement.OrderLine(3, 31),
+                new Q04_TransactionManagement.OrderLine(1, 2),
+                new Q04_TransactionManagement.OrderLine(2, 5)));
+
+        // Sorted by product id
+        assertEquals(List.of(true, true, false), results.stream().map(Q04_TransactionManagement.LineResult::accepted).toList());
+        assertEquals("Insufficient stock", results.get(2).reason());
+        assertEquals(8, db.stock(1));
+        assertEquals(45, db.stock(2));
+        assertEquals(30, db.stock(3));
+        assertEquals(2, db.queryLong("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void failingLineRollsBackAloneWhenTheBatchBreaks() throws SQLException {
+        // Product 2's row is rejected after product 1's update already ran in the same batch
+        db.execute("""
+                CREATE TRIGGER freeze_product_2 AFTER UPDATE OF stock ON products
+                WHEN NEW.product_id = 2
+                BEGIN
+                    SELECT RAISE(ABORT, 'product 2 is frozen');
+                END""");
+
+        List<Q04_TransactionManagement.LineResult> results = processor.processOrder(1, List.of(
+                new Q04_TransactionManagement.OrderLine(1, 2),
+                new Q04_TransactionManagement.OrderLine(2, 5),
+                new Q04_TransactionManagement.OrderLine(3, 31),
+                new Q04_TransactionManagement.OrderLine(1, 1)));
+
+        assertEquals(List.of(true, false, false), results.stream().map(Q04_TransactionManagement.LineResult::accepted).toList());
+        assertTrue(results.get(1).reason().contains("product 2 is frozen"), results.get(1).reason());
+        assertEquals("Insufficient stock", results.get(2).reason());
+        // Product 1 reserved exactly once, despite the batch being undone and replayed
+        assertEquals(7, db.stock(1));
+        assertEquals(50, db.stock(2));
+        assertEquals(30, db.stock(3));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+    }
+}
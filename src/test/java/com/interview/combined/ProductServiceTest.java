@@ -0,0 +1,57 @@
+package com.interview.combined;
+
+import com.interview.combined.Q06_ErrorHandling.ProductService;
+import com.interview.util.StockLedger;
+import com.interview.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductServiceTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+    private StockLedger ledger;
+    private ProductService service;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+        ledger = new StockLedger(16, dir.resolve("stock.journal"), db::connect);
+        try (Connection conn = db.connect()) {
+            ledger.open(conn, 1);
+        }
+        service = new ProductService(ledger, db.transactions());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        ledger.close();
+    }
+
+    @Test
+    void restockReachesTheLedger() throws Exception {
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 10));
+
+        service.updateStock(1, 5);
+
+        assertEquals(15, db.stock(1));
+        assertEquals(5, ledger.available(1));
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 5));
+    }
+
+    @Test
+    void failedRestockLeavesTheLedgerAlone() {
+        assertThrows(IllegalArgumentException.class, () -> service.updateStock(999, 5));
+        assertEquals(10, ledger.available(1));
+    }
+}
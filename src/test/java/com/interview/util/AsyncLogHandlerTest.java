@@ -0,0 +1,75 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    // Holds every publish until released, like a stalled disk
+    private static class StalledHandler extends Handler {
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean publishedAfterClose;
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (closed.getCount() == 0) {
+                publishedAfterClose = true;
+            }
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    @Test
+    void delegateIsClosedOnlyAfterTheWriterHasDrained() throws InterruptedException {
+        StalledHandler delegate = new StalledHandler();
+        AsyncLogHandler handler = new AsyncLogHandler(delegate, 16, AsyncLogHandler.OverflowPolicy.BLOCK,
+                Level.WARNING, 10, 1, false);
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code) {
+                // Expected: close gives up waiting while the delegate is stalled
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+
+        // Returns after its bounded wait, with the writer still stuck in the delegate
+        handler.close();
+        assertEquals(1, delegate.closed.getCount());
+
+        delegate.released.countDown();
+        assertTrue(delegate.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("message 0", "message 1", "message 2"), delegate.messages);
+        assertFalse(delegate.publishedAfterClose);
+    }
+}
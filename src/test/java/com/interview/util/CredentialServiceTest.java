@@ -0,0 +1,45 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialServiceTest {
+
+    @Test
+    void unknownUsersNeverUseTheLoginPool() throws Exception {
+        PasswordHasher hasher = new PasswordHasher(10_000);
+        String stored = hasher.hash("secret");
+        // One hashing thread with a one-slot queue: any dummy hash on the pool would crowd it out
+        try (CredentialService credentials = new CredentialService(hasher, 1, 1, 10_000)) {
+            ExecutorService flood = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<CredentialService.Verification>> unknown = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    unknown.add(flood.submit(() -> credentials.verifyUnknown("guess")));
+                }
+
+                assertTrue(credentials.verify("secret", stored).valid());
+                for (Future<CredentialService.Verification> result : unknown) {
+                    assertEquals(CredentialService.Outcome.INVALID, result.get().outcome());
+                }
+            } finally {
+                flood.shutdown();
+            }
+
+            CredentialService.Metrics metrics = credentials.snapshot();
+            assertEquals(1, metrics.verifications());
+            assertEquals(0, metrics.rejected());
+            assertEquals(40, metrics.unknown());
+            // A single dummy permit, so most of the flood waited instead of hashing
+            assertTrue(metrics.unknownDelayed() > 0, metrics.toString());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerStatsUtilTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+        try (Connection conn = db.connect()) {
+            CustomerStatsUtil.ensureCustomerStatsTable(conn);
+        }
+    }
+
+    private void placeOrders(String values) throws SQLException {
+        db.execute("INSERT INTO orders (customer_id, product_id, quantity) VALUES " + values);
+    }
+
+    // customer_id -> "orders/quantity"
+    private Map<Long, String> stats() throws SQLException {
+        return query("SELECT customer_id, total_orders, total_quantity FROM customer_stats WHERE total_orders > 0");
+    }
+
+    private Map<Long, String> expectedStats() throws SQLException {
+        return query("SELECT customer_id, COUNT(*), SUM(quantity) FROM orders GROUP BY customer_id");
+    }
+
+    private Map<Long, String> query(String sql) throws SQLException {
+        Map<Long, String> rows = new TreeMap<>();
+        try (Connection conn = db.connect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getLong(2) + "/" + rs.getLong(3));
+            }
+        }
+        return rows;
+    }
+
+    private int refreshDelta() throws SQLException {
+        try (Connection conn = db.connect()) {
+            return CustomerStatsUtil.refreshDelta(conn);
+        }
+    }
+
+    @Test
+    void deltaRefreshesMatchAFullRecompute() throws SQLException {
+        placeOrders("(1, 1, 2), (1, 2, 1), (2, 3, 4)");
+        refreshDelta();
+        assertEquals(expectedStats(), stats());
+
+        placeOrders("(1, 2, 5), (3, 1, 1)");
+        // Only customers with new orders are touched
+        assertEquals(2, refreshDelta());
+        assertEquals(expectedStats(), stats());
+
+        assertEquals(0, refreshDelta());
+        assertEquals(expectedStats(), stats());
+    }
+
+    @Test
+    void missingWatermarkRecomputesInsteadOfAdding() throws SQLException {
+        placeOrders("(1, 1, 3), (1, 2, 3), (1, 3, 3)");
+        // Maintained by the order path before the watermark existed
+        db.execute("INSERT INTO customer_stats (customer_id, total_orders, total_quantity) VALUES (1, 3, 9)");
+
+        refreshDelta();
+
+        assertEquals(Map.of(1L, "3/9"), stats());
+        assertEquals(3, db.queryLong("SELECT last_order_id FROM stats_watermarks WHERE name = 'customer_stats'"));
+    }
+
+    @Test
+    void parallelRebuildSwapsInCompleteStats() throws SQLException {
+        placeOrders("(1, 1, 2), (1, 2, 1), (2, 3, 4), (3, 1, 1)");
+        // Drifted counters the rebuild has to replace, not add to
+        db.execute("INSERT INTO customer_stats (customer_id, total_orders, total_quantity) VALUES (2, 99, 99)");
+
+        CustomerStatsUtil.rebuildCustomerStatsParallel(db::connect, 2);
+
+        assertEquals(expectedStats(), stats());
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'customer_stats_shadow'"));
+        assertEquals(4, db.queryLong("SELECT last_order_id FROM stats_watermarks WHERE name = 'customer_stats'"));
+    }
+
+    @Test
+    void deltaAfterRebuildOnlyAddsNewerOrders() throws SQLException {
+        placeOrders("(1, 1, 2), (2, 3, 4)");
+        CustomerStatsUtil.rebuildCustomerStatsParallel(db::connect, 3);
+
+        placeOrders("(2, 2, 1)");
+        assertEquals(1, refreshDelta());
+        assertEquals(expectedStats(), stats());
+    }
+
+    @Test
+    void failedRebuildLeavesNoShadowTable() throws SQLException {
+        placeOrders("(1, 1, 2), (2, 3, 4)");
+        db.execute("INSERT INTO customer_stats (customer_id, total_orders, total_quantity) VALUES (1, 7, 7)");
+
+        // The writer gets its connection; every range query then fails
+        AtomicInteger connections = new AtomicInteger();
+        CustomerStatsUtil.rebuildCustomerStatsParallel(() -> {
+            if (connections.incrementAndGet() > 1) {
+                throw new SQLException("connection refused");
+            }
+            return db.connect();
+        }, 2);
+
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'customer_stats_shadow'"));
+        assertEquals(Map.of(1L, "7/7"), stats());
+    }
+}
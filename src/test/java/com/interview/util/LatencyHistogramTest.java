@@ -0,0 +1,114 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private static void assertBucketHolds(long value) {
+        int index = LatencyHistogram.bucketIndex(value);
+        long upper = LatencyHistogram.bucketUpperBound(index);
+        assertTrue(upper >= value, "bucket " + index + " ends at " + upper + " below " + value);
+        // Within one sub-bucket, i.e. 1/32 of the value
+        assertTrue(upper - value <= value / 32, "bucket " + index + " ends at " + upper + " for " + value);
+        if (index > 0) {
+            assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "previous bucket also holds " + value);
+        }
+    }
+
+    @Test
+    void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound((int) value));
+        }
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        for (long value = 0; value < 100_000; value++) {
+            assertBucketHolds(value);
+        }
+        for (int exponent = 5; exponent < 63; exponent++) {
+            long power = 1L << exponent;
+            assertBucketHolds(power - 1);
+            assertBucketHolds(power);
+            assertBucketHolds(power + 1);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            assertBucketHolds(random.nextLong() >>> (1 + random.nextInt(63)));
+        }
+        assertBucketHolds(Long.MAX_VALUE);
+    }
+
+    @Test
+    void indexGrowsWithTheValueAndStaysInRange() {
+        int previous = 0;
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 2; value += value / 64 + 1) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= previous, "index dropped at " + value);
+            previous = index;
+        }
+        assertEquals((64 - 5) * 32 - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void snapshotReportsPercentilesWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1_000, snapshot.count());
+        assertEquals(500_500, snapshot.meanNanos());
+        assertEquals(1_000_000, snapshot.maxNanos());
+        assertBetween(500_000, snapshot.percentileNanos(0.50));
+        assertBetween(990_000, snapshot.percentileNanos(0.99));
+        // Capped at the recorded max rather than the bucket's upper bound
+        assertEquals(1_000_000, snapshot.percentileNanos(1.0));
+    }
+
+    private static void assertBetween(long exact, long reported) {
+        assertTrue(reported >= exact && reported - exact <= exact / 32, "reported " + reported + " for " + exact);
+    }
+
+    @Test
+    void negativeDurationsAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.count());
+        assertEquals(0, snapshot.maxNanos());
+        assertEquals(0, snapshot.percentileNanos(0.99));
+    }
+
+    @Test
+    void minusKeepsOnlyTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(2_000);
+        }
+
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(earlier);
+        assertEquals(10, interval.count());
+        assertEquals(2_000, interval.meanNanos());
+        assertBetween(2_000, interval.maxNanos());
+        assertBetween(2_000, interval.percentileNanos(0.99));
+
+        LatencyHistogram.Snapshot empty = histogram.snapshot().minus(histogram.snapshot());
+        assertEquals(0, empty.count());
+        assertEquals(0, empty.percentileNanos(0.99));
+    }
+}
@@ -0,0 +1,137 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderOutboxTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+    }
+
+    // Remembers the order ids it was handed
+    private static class RecordingConsumer implements OrderOutbox.Consumer {
+        private final String name;
+        private final List<Long> orderIds = new ArrayList<>();
+
+        RecordingConsumer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void consume(Connection conn, List<OrderOutbox.OrderEvent> events) throws SQLException {
+            events.forEach(event -> orderIds.add(event.orderId()));
+        }
+    }
+
+    private void append(long orderId) throws SQLException {
+        try (Connection conn = db.connect()) {
+            OrderOutbox.append(conn, OrderOutbox.ORDER_PLACED, orderId, 1, 1, 1);
+        }
+    }
+
+    private OrderOutbox.Dispatcher dispatcher(OrderOutbox.Consumer... consumers) {
+        return new OrderOutbox.Dispatcher(List.of(consumers), 2, db.transactions());
+    }
+
+    @Test
+    void everyConsumerSeesEveryEventOnce() throws SQLException {
+        RecordingConsumer first = new RecordingConsumer("first");
+        RecordingConsumer second = new RecordingConsumer("second");
+        for (long orderId = 1; orderId <= 5; orderId++) {
+            append(orderId);
+        }
+
+        // Batches of two, so each consumer needs several rounds
+        assertEquals(10, dispatcher(first, second).runOnce());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), first.orderIds);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), second.orderIds);
+    }
+
+    @Test
+    void consumersKeepUpAfterTheOutboxIsPrunedToItsLastEvent() throws SQLException {
+        RecordingConsumer consumer = new RecordingConsumer("consumer");
+        OrderOutbox.Dispatcher dispatcher = dispatcher(consumer);
+        append(1);
+        append(2);
+        dispatcher.runOnce();
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+
+        // A reused event id would sit below the consumer's offset and never be delivered
+        append(3);
+        assertEquals(1, dispatcher.runOnce());
+        assertEquals(List.of(1L, 2L, 3L), consumer.orderIds);
+        assertEquals(3, db.queryLong("SELECT MAX(event_id) FROM order_outbox"));
+    }
+
+    @Test
+    void nothingIsPrunedBeforeEveryConsumerHasAnOffset() throws SQLException {
+        RecordingConsumer healthy = new RecordingConsumer("healthy");
+        boolean[] failing = {true};
+        RecordingConsumer flaky = new RecordingConsumer("flaky") {
+            @Override
+            public void consume(Connection conn, List<OrderOutbox.OrderEvent> events) throws SQLException {
+                if (failing[0]) {
+                    throw new SQLException("downstream unavailable");
+                }
+                super.consume(conn, events);
+            }
+        };
+        OrderOutbox.Dispatcher dispatcher = dispatcher(healthy, flaky);
+        append(1);
+        append(2);
+        append(3);
+
+        assertEquals(3, dispatcher.runOnce());
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+
+        failing[0] = false;
+        assertEquals(3, dispatcher.runOnce());
+        assertEquals(List.of(1L, 2L, 3L), flaky.orderIds);
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM order_outbox"));
+    }
+
+    @Test
+    void consumerIsPreparedOnceBeforeItsFirstBatch() throws SQLException {
+        // customer_stats as created before total_quantity and last_order_date existed
+        db.execute("CREATE TABLE customer_stats (customer_id INTEGER PRIMARY KEY, total_orders INTEGER DEFAULT 0)");
+        int[] prepares = {0};
+        OrderOutbox.CustomerStatsConsumer stats = new OrderOutbox.CustomerStatsConsumer() {
+            @Override
+            public void prepare(Connection conn) throws SQLException {
+                prepares[0]++;
+                super.prepare(conn);
+            }
+        };
+        OrderOutbox.Dispatcher dispatcher = dispatcher(stats);
+
+        db.execute("INSERT INTO orders (customer_id, product_id, quantity) VALUES (1, 1, 2)");
+        append(1);
+        assertEquals(1, dispatcher.runOnce());
+        db.execute("INSERT INTO orders (customer_id, product_id, quantity) VALUES (1, 2, 3)");
+        append(2);
+        assertEquals(1, dispatcher.runOnce());
+
+        assertEquals(1, prepares[0]);
+        assertEquals(5, db.queryLong("SELECT total_quantity FROM customer_stats WHERE customer_id = 1"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    @Test
+    void idleKeyGetsExactlyItsBurst() {
+        // One permit per 10 s, so nothing refills while the test runs
+        RateLimiter limiter = new RateLimiter(0.1, 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("alice"), "permit " + i);
+        }
+        assertFalse(limiter.tryAcquire("alice"));
+
+        assertEquals(5, limiter.allowed());
+        assertEquals(1, limiter.denied());
+    }
+
+    @Test
+    void keysAreLimitedIndependently() {
+        RateLimiter limiter = new RateLimiter(0.1, 1);
+        assertTrue(limiter.tryAcquire("alice"));
+        assertFalse(limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("bob"));
+        assertEquals(2, limiter.trackedKeys());
+    }
+
+    @Test
+    void permitsRefillAtTheEmissionInterval() throws InterruptedException {
+        // 100 ms per permit
+        RateLimiter limiter = new RateLimiter(10, 1);
+        assertTrue(limiter.tryAcquire("alice"));
+        assertFalse(limiter.tryAcquire("alice"));
+
+        Thread.sleep(150);
+        assertTrue(limiter.tryAcquire("alice"));
+        assertFalse(limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(0.1, 20);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                if (limiter.tryAcquire("shared")) {
+                    granted.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(20, granted.get());
+    }
+
+    @Test
+    void onlyRefilledBucketsAreEvicted() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(10, 2);
+        limiter.tryAcquire("idle");
+        Thread.sleep(150);
+        limiter.tryAcquire("busy");
+        limiter.tryAcquire("busy");
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.trackedKeys());
+        // An evicted key starts again from a full bucket
+        assertTrue(limiter.tryAcquire("idle"));
+        assertTrue(limiter.tryAcquire("idle"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatingFileHandlerTest {
+    @TempDir
+    Path dir;
+
+    private RotatingFileHandler handler(long maxBytes, long interval, TimeUnit unit, int maxArchives)
+            throws IOException {
+        RotatingFileHandler handler = new RotatingFileHandler(dir.resolve("app.log"), maxBytes, interval, unit, maxArchives);
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + "\n";
+            }
+        });
+        return handler;
+    }
+
+    private List<Path> files(String glob) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            stream.forEach(result::add);
+        }
+        return result;
+    }
+
+    // Every line in the active file and all compressed segments
+    private List<String> allLines() throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(dir.resolve("app.log")));
+        for (Path archive : files("app-*.log.gz")) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+                String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                lines.addAll(content.lines().toList());
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void rollsOverBySizeAndCompressesSegments() throws IOException {
+        RotatingFileHandler handler = handler(100, 1, TimeUnit.DAYS, 100);
+        for (int i = 0; i < 50; i++) {
+            handler.publish(new LogRecord(Level.INFO, String.format("message %03d", i)));
+        }
+        // Waits for the compressor to finish
+        handler.close();
+
+        assertTrue(files("app-*.log.gz").size() > 1, "expected several compressed segments");
+        assertEquals(List.of(), files("app-*.log"));
+        assertTrue(Files.size(dir.resolve("app.log")) <= 100);
+
+        List<String> lines = allLines();
+        assertEquals(50, lines.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(lines.contains(String.format("message %03d", i)), "missing message " + i);
+        }
+    }
+
+    @Test
+    void keepsOnlyTheNewestArchives() throws IOException {
+        RotatingFileHandler handler = handler(20, 1, TimeUnit.DAYS, 3);
+        for (int i = 0; i < 30; i++) {
+            handler.publish(new LogRecord(Level.INFO, String.format("message %03d", i)));
+        }
+        handler.close();
+
+        assertEquals(3, files("app-*.log.gz").size());
+        // Each segment holds one 12-byte line, so the survivors are the last three rolled over
+        List<String> lines = allLines();
+        assertEquals(4, lines.size());
+        for (int i = 26; i < 30; i++) {
+            assertTrue(lines.contains(String.format("message %03d", i)), "missing message " + i);
+        }
+    }
+
+    @Test
+    void rollsOverWhenTheIntervalEnds() throws Exception {
+        RotatingFileHandler handler = handler(1_000_000, 100, TimeUnit.MILLISECONDS, 10);
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        Thread.sleep(250);
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        handler.close();
+
+        assertEquals(1, files("app-*.log.gz").size());
+        assertEquals(List.of("after"), Files.readAllLines(dir.resolve("app.log")));
+        assertEquals(List.of("after", "before"), allLines());
+    }
+}
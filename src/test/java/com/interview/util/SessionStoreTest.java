@@ -0,0 +1,108 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionStoreTest {
+    @TempDir
+    Path dir;
+
+    private SessionStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    // Polls instead of sleeping a fixed time, so a slow machine only makes the test slower
+    private static void awaitSize(SessionStore store, int expected, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (store.size() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, store.size());
+    }
+
+    @Test
+    void validTokenReturnsItsSession() {
+        store = new SessionStore(1, TimeUnit.MINUTES, 10);
+        String token = store.create(42, "alice");
+
+        SessionStore.Session session = store.validate(token);
+        assertNotNull(session);
+        assertEquals(42, session.userId());
+        assertEquals("alice", session.username());
+        assertNull(store.validate(token + "x"));
+    }
+
+    @Test
+    void wheelReapsIdleSessionsWithoutAValidate() throws InterruptedException {
+        store = new SessionStore(100, TimeUnit.MILLISECONDS, 10);
+        store.create(1, "alice");
+        store.create(2, "bob");
+        assertEquals(2, store.size());
+
+        awaitSize(store, 0, 2_000);
+    }
+
+    @Test
+    void deadlinesBeyondTheFirstLevelCascadeDown() throws InterruptedException {
+        // 150 ticks of 5 ms: scheduled on the second level, expired from the first
+        store = new SessionStore(750, TimeUnit.MILLISECONDS, 5);
+        String token = store.create(1, "alice");
+
+        Thread.sleep(400);
+        assertEquals(1, store.size());
+        awaitSize(store, 0, 3_000);
+        assertNull(store.validate(token));
+    }
+
+    @Test
+    void validateSlidesTheIdleDeadline() throws InterruptedException {
+        store = new SessionStore(200, TimeUnit.MILLISECONDS, 10);
+        String token = store.create(1, "alice");
+
+        // Three times the timeout in total, never idle for more than half of it
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(100);
+            assertNotNull(store.validate(token), "validate " + i);
+        }
+        awaitSize(store, 0, 2_000);
+    }
+
+    @Test
+    void invalidatedTokenIsRejectedAtOnce() {
+        store = new SessionStore(1, TimeUnit.MINUTES, 10);
+        String token = store.create(1, "alice");
+
+        store.invalidate(token);
+        assertNull(store.validate(token));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void snapshotRestoresLiveSessions() throws IOException {
+        Path snapshot = dir.resolve("sessions.snapshot");
+        SessionStore original = new SessionStore(1, TimeUnit.MINUTES, 10);
+        String token = original.create(7, "carol");
+        original.snapshot(snapshot);
+        original.close();
+
+        store = new SessionStore(1, TimeUnit.MINUTES, 10);
+        assertEquals(1, store.restore(snapshot));
+        SessionStore.Session session = store.validate(token);
+        assertNotNull(session);
+        assertEquals(7, session.userId());
+    }
+}
@@ -0,0 +1,112 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StagedUpsertTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+    }
+
+    private int merge(StagedUpsert.Target target, Object[]... rows) throws SQLException {
+        try (Connection conn = db.connect()) {
+            return StagedUpsert.merge(conn, target, List.of(rows));
+        }
+    }
+
+    @Test
+    void updatesKnownKeysAndInsertsTheRest() throws SQLException {
+        int merged = merge(StagedUpsert.Target.PRODUCTS,
+                new Object[]{2, "Mouse", 19.99, 60},
+                new Object[]{null, "Webcam", 49.99, 15},
+                new Object[]{7, "Monitor", 199.0, 4});
+
+        assertEquals(3, merged);
+        assertEquals(60, db.stock(2));
+        assertEquals(4, db.stock(7));
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM products WHERE name = 'Webcam'"));
+        assertEquals(5, db.queryLong("SELECT COUNT(*) FROM products"));
+    }
+
+    @Test
+    void lastRowWinsForARepeatedKey() throws SQLException {
+        merge(StagedUpsert.Target.PRODUCTS,
+                new Object[]{1, "Laptop", 999.99, 8},
+                new Object[]{1, "Laptop", 999.99, 3});
+
+        assertEquals(3, db.stock(1));
+    }
+
+    @Test
+    void largeFeedsSpanSeveralStagingStatements() throws SQLException {
+        // 4 columns per row, so 249 rows fit in one statement
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            rows.add(new Object[]{100 + i, "Product " + i, 1.0, i});
+        }
+        try (Connection conn = db.connect()) {
+            assertEquals(1_000, StagedUpsert.merge(conn, StagedUpsert.Target.PRODUCTS, rows));
+        }
+        assertEquals(1_003, db.queryLong("SELECT COUNT(*) FROM products"));
+        assertEquals(999, db.stock(1_099));
+    }
+
+    @Test
+    void targetsOnTheSameTableWithDifferentColumnsShareAConnection() throws SQLException {
+        // A price feed leaves stock alone
+        StagedUpsert.Target prices = new StagedUpsert.Target("products", "product_id",
+                List.of("product_id", "name", "price"));
+        try (Connection conn = db.connect()) {
+            StagedUpsert.merge(conn, StagedUpsert.Target.PRODUCTS, List.<Object[]>of(new Object[]{1, "Laptop", 999.0, 9}));
+            StagedUpsert.merge(conn, prices, List.<Object[]>of(new Object[]{1, "Laptop", 899.0}));
+            StagedUpsert.merge(conn, StagedUpsert.Target.PRODUCTS, List.<Object[]>of(new Object[]{2, "Mouse", 20.0, 40}));
+        }
+        assertEquals(9, db.stock(1));
+        assertEquals(899, db.queryLong("SELECT price FROM products WHERE product_id = 1"));
+        assertEquals(40, db.stock(2));
+    }
+
+    @Test
+    void ordersAreAppendedOncePerKeyAndNeverUpdated() throws SQLException {
+        assertEquals(2, merge(StagedUpsert.Target.ORDERS,
+                new Object[]{"feed-1", 1, 1, 1},
+                new Object[]{"feed-2", 2, 2, 3},
+                new Object[]{"feed-1", 1, 1, 5}));
+
+        // A replayed feed only adds what is new
+        assertEquals(1, merge(StagedUpsert.Target.ORDERS,
+                new Object[]{"feed-2", 2, 2, 9},
+                new Object[]{"feed-3", 3, 3, 2}));
+
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM orders"));
+        assertEquals(1, db.queryLong("SELECT quantity FROM orders WHERE idempotency_key = 'feed-1'"));
+        assertEquals(3, db.queryLong("SELECT quantity FROM orders WHERE idempotency_key = 'feed-2'"));
+    }
+
+    @Test
+    void failedMergeRollsBackItsOwnTransaction() throws SQLException {
+        // Second row breaks products.name NOT NULL after the first was already staged
+        assertThrows(SQLException.class, () -> merge(StagedUpsert.Target.PRODUCTS,
+                new Object[]{1, "Laptop", 999.99, 1},
+                new Object[]{null, null, 5.0, 1}));
+
+        assertEquals(10, db.stock(1));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM products"));
+    }
+}
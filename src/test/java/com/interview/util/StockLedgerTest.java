@@ -0,0 +1,198 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockLedgerTest {
+    @TempDir
+    Path dir;
+
+    private TestDatabase db;
+    private Path journal;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = TestDatabase.create(dir);
+        journal = dir.resolve("stock.journal");
+    }
+
+    // A ledger that is never closed stands in for a crashed process
+    private StockLedger openLedger() throws SQLException {
+        StockLedger ledger = new StockLedger(16, journal, db::connect);
+        try (Connection conn = db.connect()) {
+            ledger.open(conn, 1, 2);
+        }
+        return ledger;
+    }
+
+    private int flush(StockLedger ledger) throws SQLException {
+        try (Connection conn = db.connect()) {
+            return ledger.flush(conn);
+        }
+    }
+
+    // Releases aren't waited on; stock comes back once the syncer has journaled them
+    private static void awaitAvailable(StockLedger ledger, int productId, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (ledger.available(productId) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, ledger.available(productId));
+    }
+
+    @Test
+    void concurrentReservationsNeverExceedStock() throws Exception {
+        StockLedger ledger = openLedger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<StockLedger.Reservation>> attempts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            attempts.add(executor.submit(() -> ledger.reserve(1, 1)));
+        }
+        int reserved = 0;
+        for (Future<StockLedger.Reservation> attempt : attempts) {
+            reserved += attempt.get() == StockLedger.Reservation.RESERVED ? 1 : 0;
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(10, reserved);
+        assertEquals(0, ledger.available(1));
+        assertEquals(StockLedger.Reservation.INSUFFICIENT, ledger.reserve(1, 1));
+        assertEquals(StockLedger.Reservation.NOT_TRACKED, ledger.reserve(3, 1));
+
+        flush(ledger);
+        assertEquals(0, db.stock(1));
+    }
+
+    @Test
+    void flushAppliesReservationsOnce() throws SQLException {
+        StockLedger ledger = openLedger();
+        ledger.reserve(1, 3);
+        ledger.reserve(2, 5);
+
+        assertEquals(2, flush(ledger));
+        assertEquals(0, flush(ledger));
+        assertEquals(7, db.stock(1));
+        assertEquals(45, db.stock(2));
+    }
+
+    @Test
+    void acknowledgedReservationsSurviveACrash() throws Exception {
+        StockLedger crashed = openLedger();
+        crashed.reserve(1, 3);
+        crashed.reserve(2, 2);
+        crashed.release(2, 2);
+        awaitAvailable(crashed, 2, 50);
+
+        StockLedger recovered = openLedger();
+        assertEquals(7, db.stock(1));
+        assertEquals(50, db.stock(2));
+        assertEquals(7, recovered.available(1));
+
+        // Recovery checkpoints what it replayed, so another restart applies nothing twice
+        openLedger();
+        assertEquals(7, db.stock(1));
+    }
+
+    @Test
+    void replaySkipsWhatAFlushAlreadyCommitted() throws SQLException {
+        StockLedger crashed = openLedger();
+        crashed.reserve(1, 3);
+        flush(crashed);
+        crashed.reserve(1, 1);
+
+        openLedger();
+        assertEquals(6, db.stock(1));
+    }
+
+    @Test
+    void tornJournalTailIsIgnored() throws Exception {
+        StockLedger crashed = openLedger();
+        crashed.reserve(1, 3);
+        // Half a record, as left by a crash mid-write of an unacknowledged reservation
+        Files.write(journal, new byte[7], StandardOpenOption.APPEND);
+
+        openLedger();
+        assertEquals(7, db.stock(1));
+    }
+
+    @Test
+    void productsAreReservedConcurrentlyAndFlushedTogether() throws Exception {
+        StockLedger ledger = openLedger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<StockLedger.Reservation>> attempts = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            int productId = i % 2 == 0 ? 1 : 2;
+            attempts.add(executor.submit(() -> ledger.reserve(productId, 1)));
+        }
+        for (Future<StockLedger.Reservation> attempt : attempts) {
+            attempt.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 30 attempts each: all of product 2's stock of 50, only 10 of product 1
+        assertEquals(0, ledger.available(1));
+        assertEquals(20, ledger.available(2));
+        ledger.close();
+        assertEquals(0, db.stock(1));
+        assertEquals(20, db.stock(2));
+    }
+
+    @Test
+    void releasedStockCanBeReservedAgain() throws Exception {
+        StockLedger ledger = openLedger();
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 10));
+        ledger.release(1, 4);
+        awaitAvailable(ledger, 1, 4);
+
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 4));
+        ledger.close();
+        assertEquals(0, db.stock(1));
+    }
+
+    @Test
+    void restocksReportedThroughAdjustCanBeReserved() throws SQLException {
+        StockLedger ledger = openLedger();
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 10));
+        assertEquals(StockLedger.Reservation.INSUFFICIENT, ledger.reserve(1, 1));
+
+        // Committed to the database first, then reported to the ledger
+        db.execute("UPDATE products SET stock = stock + 5 WHERE product_id = 1");
+        ledger.adjust(1, 5);
+
+        assertEquals(StockLedger.Reservation.RESERVED, ledger.reserve(1, 5));
+        ledger.close();
+        assertEquals(0, db.stock(1));
+    }
+
+    @Test
+    void closedLedgerRejectsReservationsWithoutLosingStock() throws SQLException {
+        StockLedger ledger = openLedger();
+        ledger.reserve(1, 2);
+        ledger.close();
+
+        assertThrows(IllegalStateException.class, () -> ledger.reserve(1, 1));
+        assertEquals(8, ledger.available(1));
+        assertEquals(8, db.stock(1));
+        assertFalse(Files.exists(journal.resolveSibling("stock.journal.sealed")));
+    }
+}
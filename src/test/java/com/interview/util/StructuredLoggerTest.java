@@ -0,0 +1,55 @@
+package com.interview.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StructuredLoggerTest {
+
+    // Reads the source on the writer thread, long after inference was forced in publish
+    private static class SourceRecorder extends Handler {
+        final List<String> sources = new ArrayList<>();
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            sources.add(record.getSourceClassName() + "." + record.getSourceMethodName());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private void placeOrder(StructuredLogger log) {
+        log.at(Level.INFO).with("orderId", 7).log("Order placed");
+    }
+
+    @Test
+    void sourceIsTheCallerBehindAnAsyncHandler() {
+        Logger logger = Logger.getLogger("structured-logger-test");
+        logger.setUseParentHandlers(false);
+        SourceRecorder recorder = new SourceRecorder();
+        AsyncLogHandler async = new AsyncLogHandler(recorder, 16, AsyncLogHandler.OverflowPolicy.BLOCK);
+        logger.addHandler(async);
+        try {
+            placeOrder(StructuredLogger.of(logger));
+        } finally {
+            logger.removeHandler(async);
+            // Drains the buffer before returning
+            async.close();
+        }
+
+        assertEquals(List.of(StructuredLoggerTest.class.getName() + ".placeOrder"), recorder.sources);
+    }
+}
@@ -0,0 +1,99 @@
+package com.interview.util;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Throwaway SQLite database with the same shape as DatabaseUtil.initializeDatabase:
+ * customers 1-3, products 1-3 with stock 10, 50 and 30, and no orders.
+ */
+public final class TestDatabase {
+    private final String url;
+
+    private TestDatabase(String url) {
+        this.url = url;
+    }
+
+    public static TestDatabase create(Path dir) throws SQLException {
+        TestDatabase db = new TestDatabase("jdbc:sqlite:" + dir.resolve("test.db"));
+        try (Connection conn = db.connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                        CREATE TABLE customers (
+                            customer_id INTEGER PRIMARY KEY,
+                            name TEXT NOT NULL,
+                            email TEXT UNIQUE,
+                            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE products (
+                            product_id INTEGER PRIMARY KEY,
+                            name TEXT NOT NULL,
+                            price DECIMAL(10,2) NOT NULL,
+                            stock INTEGER DEFAULT 0
+                        )
+                    """);
+            stmt.execute("""
+                        CREATE TABLE orders (
+                            order_id INTEGER PRIMARY KEY,
+                            customer_id INTEGER,
+                            product_id INTEGER,
+                            quantity INTEGER NOT NULL,
+                            order_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            FOREIGN KEY (customer_id) REFERENCES customers(customer_id),
+                            FOREIGN KEY (product_id) REFERENCES products(product_id)
+                        )
+                    """);
+            DatabaseUtil.ensureOrderIdempotencyKey(conn);
+            OrderOutbox.ensureTables(conn);
+
+            stmt.execute("""
+                        INSERT INTO customers (customer_id, name, email) VALUES
+                        (1, 'John Doe', 'john@example.com'),
+                        (2, 'Jane Smith', 'jane@example.com'),
+                        (3, 'Bob Wilson', 'bob@example.com')
+                    """);
+            stmt.execute("""
+                        INSERT INTO products (product_id, name, price, stock) VALUES
+                        (1, 'Laptop', 999.99, 10),
+                        (2, 'Mouse', 24.99, 50),
+                        (3, 'Keyboard', 59.99, 30)
+                    """);
+        }
+        return db;
+    }
+
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    // Few attempts and short backoff, so a test that hits lock contention fails fast
+    public TransactionTemplate transactions() {
+        return new TransactionTemplate(this::connect, 5, 5, 50, 1_000);
+    }
+
+    public void execute(String sql) throws SQLException {
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    // First column of the first row, or 0 when there is no row
+    public long queryLong(String sql) throws SQLException {
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public int stock(int productId) throws SQLException {
+        return (int) queryLong("SELECT stock FROM products WHERE product_id = " + productId);
+    }
+}